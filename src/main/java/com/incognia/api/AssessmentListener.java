@@ -0,0 +1,32 @@
+package com.incognia.api;
+
+/**
+ * Receives the outcome of each request submitted through the bulk methods of {@link IncogniaAPI},
+ * like {@link IncogniaAPI#registerPayments(java.util.Iterator, int, AssessmentListener)}.
+ *
+ * <p>Callbacks are invoked from the threads that complete the requests and may run concurrently. A
+ * new request is only pulled from the source after the callback for a finished one returns, so a
+ * slow listener slows down the whole pipeline instead of accumulating results in memory.
+ *
+ * @param <T> the request type
+ * @param <R> the assessment type
+ */
+public interface AssessmentListener<T, R> {
+  /**
+   * Called when a request was successfully assessed.
+   *
+   * @param request the request that was sent
+   * @param assessment the assessment returned by the api
+   */
+  void onAssessment(T request, R assessment);
+
+  /**
+   * Called when a request failed.
+   *
+   * @param request the request that was sent
+   * @param throwable an {@link com.incognia.common.exceptions.IncogniaAPIException} in case of api
+   *     errors, an {@link IllegalArgumentException} for invalid requests or an {@link
+   *     com.incognia.common.exceptions.IncogniaException} in case of unexpected errors
+   */
+  void onError(T request, Throwable throwable);
+}
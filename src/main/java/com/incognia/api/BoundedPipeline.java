@@ -0,0 +1,115 @@
+package com.incognia.api;
+
+import com.incognia.common.utils.CompletableFutures;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Pulls requests from a source and keeps at most {@code maxInFlight} of them running at a time. The
+ * source is only advanced when a slot frees up, so memory usage is bounded regardless of the source
+ * size.
+ *
+ * <p>If the source or the listener throws, no further requests are pulled, and the returned future
+ * completes exceptionally with the first such exception once the requests already running have
+ * finished and been handed to the listener, so the listener is never called after it completes.
+ */
+final class BoundedPipeline<T, R> {
+  private final Iterator<? extends T> source;
+  private final int maxInFlight;
+  private final Function<T, CompletableFuture<R>> operation;
+  private final AssessmentListener<T, R> listener;
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger wip = new AtomicInteger();
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  // only accessed by the thread currently running drain()
+  private boolean exhausted;
+
+  BoundedPipeline(
+      Iterator<? extends T> source,
+      int maxInFlight,
+      Function<T, CompletableFuture<R>> operation,
+      AssessmentListener<T, R> listener) {
+    this.source = source;
+    this.maxInFlight = maxInFlight;
+    this.operation = operation;
+    this.listener = listener;
+  }
+
+  CompletableFuture<Void> start() {
+    drain();
+    return completion;
+  }
+
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      while (!exhausted
+          && failure.get() == null
+          && !completion.isDone()
+          && inFlight.get() < maxInFlight) {
+        T request;
+        try {
+          if (!source.hasNext()) {
+            exhausted = true;
+            break;
+          }
+          request = source.next();
+        } catch (RuntimeException e) {
+          exhausted = true;
+          failure.compareAndSet(null, e);
+          break;
+        }
+        inFlight.incrementAndGet();
+        submit(request);
+      }
+      RuntimeException firstFailure = failure.get();
+      if ((exhausted || firstFailure != null) && inFlight.get() == 0) {
+        if (firstFailure == null) {
+          completion.complete(null);
+        } else {
+          completion.completeExceptionally(firstFailure);
+        }
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void submit(T request) {
+    CompletableFuture<R> future;
+    try {
+      future = operation.apply(request);
+    } catch (RuntimeException e) {
+      future = CompletableFutures.failedFuture(e);
+    }
+    future.whenComplete(
+        (assessment, throwable) -> {
+          try {
+            if (throwable == null) {
+              listener.onAssessment(request, assessment);
+            } else {
+              listener.onError(request, unwrap(throwable));
+            }
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            inFlight.decrementAndGet();
+            drain();
+          }
+        });
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      return throwable.getCause();
+    }
+    return throwable;
+  }
+}
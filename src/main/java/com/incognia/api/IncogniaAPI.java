@@ -1,40 +1,53 @@
 package com.incognia.api;
 
+import com.incognia.api.clients.AimdConcurrencyLimiter;
 import com.incognia.api.clients.AutoRefreshTokenProvider;
+import com.incognia.api.clients.Bulkheads;
+import com.incognia.api.clients.Deadline;
+import com.incognia.api.clients.HedgingPolicy;
+import com.incognia.api.clients.HttpClientFactory;
+import com.incognia.api.clients.JsonCodec;
 import com.incognia.api.clients.NetworkingClient;
+import com.incognia.api.clients.PriorityScheduler;
 import com.incognia.api.clients.TokenAwareNetworkingClient;
 import com.incognia.api.clients.TokenProvider;
-import com.incognia.common.Address;
+import com.incognia.api.clients.TokenProviders;
+import com.incognia.common.RequestPriority;
 import com.incognia.common.exceptions.IncogniaAPIException;
 import com.incognia.common.exceptions.IncogniaException;
 import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.BulkheadOptions;
 import com.incognia.common.utils.ClientCredentials;
 import com.incognia.common.utils.CustomOptions;
+import com.incognia.common.utils.InstanceEvictionOptions;
+import com.incognia.common.utils.RequestOptions;
 import com.incognia.feedback.FeedbackEvent;
 import com.incognia.feedback.FeedbackIdentifiers;
 import com.incognia.feedback.PostFeedbackRequestBody;
-import com.incognia.onboarding.PostSignupRequestBody;
 import com.incognia.onboarding.RegisterSignupRequest;
 import com.incognia.onboarding.RegisterWebSignupRequest;
 import com.incognia.onboarding.SignupAssessment;
-import com.incognia.transaction.AddressType;
-import com.incognia.transaction.PostTransactionRequestBody;
-import com.incognia.transaction.TransactionAddress;
 import com.incognia.transaction.TransactionAssessment;
 import com.incognia.transaction.login.RegisterLoginRequest;
 import com.incognia.transaction.login.RegisterWebLoginRequest;
 import com.incognia.transaction.payment.RegisterPaymentRequest;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import okhttp3.ConnectionPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
-import org.jetbrains.annotations.NotNull;
 
 /**
  * Class providing an implementation of the API endpoints described in <a
@@ -46,11 +59,28 @@ public class IncogniaAPI {
   private static final String API_URL = "https://api.incognia.com";
   private static final String EVALUATION_PARAMETER = "eval";
   private static final String DRY_RUN_PARAMETER = "dry_run";
+  private static final String SIGNUPS_PATH = "api/v2/onboarding/signups";
+  private static final String TRANSACTIONS_PATH = "api/v2/authentication/transactions";
+  private static final RequestOptions DEFAULT_REQUEST_OPTIONS = RequestOptions.builder().build();
+  private static final String FEEDBACKS_PATH = "api/v2/feedbacks";
+  private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 
+  private final OkHttpClient httpClient;
+  private final OkHttpClient tokenHttpClient;
+  private final AutoRefreshTokenProvider autoRefreshTokenProvider;
   private final TokenAwareNetworkingClient tokenAwareNetworkingClient;
+  private final HedgingPolicy loginHedgingPolicy;
+  private final int maxConnections;
+  private final InstanceEvictionOptions instanceEviction;
+  private final boolean sharedHttpClient;
+  private final boolean wireRequestBodies;
+  private volatile long lastUsedNanos = nanoClock.getAsLong();
 
   private static final ConcurrentHashMap<ClientCredentials, IncogniaAPI> INSTANCES =
       new ConcurrentHashMap<>();
+  // the time source of instance eviction, replaced in tests
+  static volatile LongSupplier nanoClock = System::nanoTime;
+  private static volatile long nextEvictionNanos = nanoClock.getAsLong();
 
   /**
    * Creates a new instance for a given client id/secret.
@@ -67,20 +97,67 @@ public class IncogniaAPI {
     Asserts.assertNotEmpty(clientSecret, "client secret");
     Asserts.assertNotNull(options, "custom options");
     Asserts.assertNotEmpty(apiUrl, "api url");
-    OkHttpClient httpClient =
-        new OkHttpClient.Builder()
-            .callTimeout(options.getTimeoutMillis(), TimeUnit.MILLISECONDS)
-            .connectionPool(
-                new ConnectionPool(
-                    options.getMaxConnections(), options.getKeepAliveSeconds(), TimeUnit.SECONDS))
-            .build();
+    validate(options.getInstanceEviction());
+    sharedHttpClient = options.getHttpClient() != null;
+    if (sharedHttpClient) {
+      validateSharedHttpClient(options);
+      httpClient = options.getHttpClient();
+    } else {
+      httpClient = HttpClientFactory.create(options);
+    }
+    Bulkheads bulkheads =
+        Bulkheads.from(bulkheadOptionsByPath(options), options.getTokenBulkhead());
+    JsonCodec jsonCodec = options.getJsonCodec();
+    if (options.isGeneratedJsonAccessors()) {
+      if (jsonCodec != null) {
+        throw new IllegalArgumentException(
+            "'json codec' and 'generated json accessors' cannot both be set");
+      }
+      jsonCodec = JsonCodecs.withGeneratedAccessors();
+    } else if (jsonCodec == null) {
+      jsonCodec = JsonCodecs.defaultCodec();
+    }
+    wireRequestBodies = !JsonCodecs.writesRequests(jsonCodec);
+    NetworkingClient networkingClient =
+        new NetworkingClient(httpClient, apiUrl, bulkheads, jsonCodec);
     TokenProvider tokenProvider = options.getTokenProvider();
+    if (options.getAsyncTokenProvider() != null) {
+      if (tokenProvider != null) {
+        throw new IllegalArgumentException(
+            "'token provider' and 'async token provider' cannot both be set");
+      }
+      tokenProvider = TokenProviders.fromAsync(options.getAsyncTokenProvider());
+    }
     if (tokenProvider == null) {
-      tokenProvider =
+      // tokens are requested on a lane of their own so that a refresh is not queued behind the
+      // requests waiting for it
+      tokenHttpClient = HttpClientFactory.createForTokens(httpClient, options);
+      autoRefreshTokenProvider =
           new AutoRefreshTokenProvider(
-              clientId, clientSecret, new NetworkingClient(httpClient, apiUrl));
+              clientId,
+              clientSecret,
+              new NetworkingClient(tokenHttpClient, apiUrl, bulkheads, jsonCodec),
+              options);
+      tokenProvider = autoRefreshTokenProvider;
+    } else {
+      tokenHttpClient = null;
+      autoRefreshTokenProvider = null;
     }
-    tokenAwareNetworkingClient = new TokenAwareNetworkingClient(httpClient, apiUrl, tokenProvider);
+    AimdConcurrencyLimiter concurrencyLimiter =
+        options.getAdaptiveConcurrencyLimit() == null
+            ? null
+            : new AimdConcurrencyLimiter(options.getAdaptiveConcurrencyLimit());
+    PriorityScheduler priorityScheduler =
+        options.getPriorityScheduling() == null
+            ? null
+            : new PriorityScheduler(options.getPriorityScheduling());
+    tokenAwareNetworkingClient =
+        new TokenAwareNetworkingClient(
+            networkingClient, tokenProvider, concurrencyLimiter, priorityScheduler);
+    loginHedgingPolicy =
+        options.getLoginHedging() == null ? null : new HedgingPolicy(options.getLoginHedging());
+    maxConnections = options.getMaxConnections();
+    instanceEviction = options.getInstanceEviction();
   }
 
   /**
@@ -95,8 +172,17 @@ public class IncogniaAPI {
     ClientCredentials credentials =
         ClientCredentials.builder().clientId(clientId).clientSecret(clientSecret).build();
 
-    INSTANCES.computeIfAbsent(credentials, c -> new IncogniaAPI(clientId, clientSecret, options));
-    return INSTANCES.get(credentials);
+    AtomicBoolean created = new AtomicBoolean();
+    IncogniaAPI api =
+        INSTANCES.computeIfAbsent(
+            credentials,
+            c -> {
+              created.set(true);
+              return new IncogniaAPI(clientId, clientSecret, options);
+            });
+    api.lastUsedNanos = nanoClock.getAsLong();
+    evictInstances(created.get() ? api.instanceEviction : null);
+    return api;
   }
 
   /**
@@ -125,7 +211,10 @@ public class IncogniaAPI {
           "Multiple IncogniaAPI instances have been created. Use IncogniaAPI.instance(clientId, clientSecret) to retrieve the desired one.");
     }
 
-    return INSTANCES.entrySet().iterator().next().getValue();
+    IncogniaAPI api = INSTANCES.values().iterator().next();
+    api.lastUsedNanos = nanoClock.getAsLong();
+    evictInstances(null);
+    return api;
   }
 
   /**
@@ -140,11 +229,160 @@ public class IncogniaAPI {
     ClientCredentials credentials =
         ClientCredentials.builder().clientId(clientId).clientSecret(clientSecret).build();
 
-    if (!INSTANCES.containsKey(credentials)) {
+    IncogniaAPI api = INSTANCES.get(credentials);
+    if (api == null) {
       throw new IllegalStateException(
           "IncogniaAPI instance not initialized. Use IncogniaAPI.init(clientId, clientSecret) to set it.");
     }
-    return INSTANCES.get(credentials);
+    api.lastUsedNanos = nanoClock.getAsLong();
+    evictInstances(null);
+    return api;
+  }
+
+  /**
+   * Removes the instances created with {@link InstanceEvictionOptions} that have not been used for
+   * requests, nor looked up, for longer than their {@code maxIdleMillis}. Runs at most once per
+   * {@link #EVICTION_INTERVAL_NANOS}, unless {@code newInstanceEviction} is given: then an instance
+   * was just created with it, and the least recently used instances are also removed until at most
+   * {@code maxInstances} evictable instances remain.
+   */
+  private static void evictInstances(InstanceEvictionOptions newInstanceEviction) {
+    long now = nanoClock.getAsLong();
+    if (newInstanceEviction == null && now - nextEvictionNanos < 0) {
+      return;
+    }
+    nextEvictionNanos = now + EVICTION_INTERVAL_NANOS;
+    List<Map.Entry<ClientCredentials, IncogniaAPI>> evictable = new ArrayList<>();
+    for (Map.Entry<ClientCredentials, IncogniaAPI> entry : INSTANCES.entrySet()) {
+      IncogniaAPI api = entry.getValue();
+      if (api.instanceEviction == null) {
+        continue;
+      }
+      Long maxIdleMillis = api.instanceEviction.getMaxIdleMillis();
+      if (maxIdleMillis != null
+          && now - api.lastUsedNanos > TimeUnit.MILLISECONDS.toNanos(maxIdleMillis)) {
+        evict(entry.getKey(), api);
+      } else {
+        evictable.add(entry);
+      }
+    }
+    Integer maxInstances =
+        newInstanceEviction == null ? null : newInstanceEviction.getMaxInstances();
+    if (maxInstances == null || evictable.size() <= maxInstances) {
+      return;
+    }
+    evictable.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsedNanos - now));
+    for (int i = 0; i < evictable.size() - maxInstances; i++) {
+      evict(evictable.get(i).getKey(), evictable.get(i).getValue());
+    }
+  }
+
+  /**
+   * Removes {@code api} from the multiton and releases what it keeps running in the background: its
+   * token is no longer renewed ahead of time, and the idle connections of an http client of its own
+   * are closed. It keeps working for whoever still holds it, renewing its token on requests.
+   */
+  private static void evict(ClientCredentials credentials, IncogniaAPI api) {
+    if (!INSTANCES.remove(credentials, api)) {
+      return;
+    }
+    if (api.autoRefreshTokenProvider != null) {
+      api.autoRefreshTokenProvider.stopBackgroundRefresh();
+    }
+    if (!api.sharedHttpClient) {
+      // the token client is derived from the http client, so this also covers its connections
+      api.httpClient.connectionPool().evictAll();
+    }
+  }
+
+  /** Returns the client requests are sent through, recording that this instance is in use. */
+  private TokenAwareNetworkingClient client() {
+    lastUsedNanos = nanoClock.getAsLong();
+    return tokenAwareNetworkingClient;
+  }
+
+  /**
+   * The connection, timeout and dispatcher options configure the http client this library creates,
+   * so they cannot be applied to a shared one.
+   */
+  private static void validateSharedHttpClient(CustomOptions options) {
+    CustomOptions defaults = CustomOptions.builder().build();
+    if (options.getTimeoutMillis() != defaults.getTimeoutMillis()
+        || options.getMaxConnections() != defaults.getMaxConnections()
+        || options.getKeepAliveSeconds() != defaults.getKeepAliveSeconds()
+        || options.getMaxRequests() != defaults.getMaxRequests()
+        || options.getMaxRequestsPerHost() != defaults.getMaxRequestsPerHost()
+        || options.getDispatcherExecutor() != null
+        || options.isUseVirtualThreads()) {
+      throw new IllegalArgumentException(
+          "'http client' cannot be combined with the connection, timeout and dispatcher options");
+    }
+  }
+
+  private static Map<String, BulkheadOptions> bulkheadOptionsByPath(CustomOptions options) {
+    Map<String, BulkheadOptions> optionsByPath = new HashMap<>();
+    optionsByPath.put(SIGNUPS_PATH, options.getSignupsBulkhead());
+    optionsByPath.put(TRANSACTIONS_PATH, options.getTransactionsBulkhead());
+    optionsByPath.put(FEEDBACKS_PATH, options.getFeedbacksBulkhead());
+    return optionsByPath;
+  }
+
+  private static void validate(InstanceEvictionOptions options) {
+    if (options == null) {
+      return;
+    }
+    if (options.getMaxIdleMillis() != null) {
+      Asserts.assertPositive(options.getMaxIdleMillis(), "max idle millis");
+    }
+    if (options.getMaxInstances() != null) {
+      Asserts.assertPositive(options.getMaxInstances(), "max instances");
+    }
+  }
+
+  /**
+   * Gets an access token and opens up to {@code maxConnections} pooled connections to the Incognia
+   * API, so that the first requests after startup do not pay for the token request and the TLS
+   * handshakes. Blocks until done; readiness checks can wait for it before sending traffic.
+   *
+   * <p>Fewer connections may be opened: over HTTP/2 requests are multiplexed onto a single
+   * connection, and over HTTP/1.1 at most {@code maxRequestsPerHost} requests are sent at once.<br>
+   * Example:
+   *
+   * <pre>{@code
+   * IncogniaAPI api = IncogniaAPI.init("client-id", "client-secret");
+   * api.warmUp();
+   * }</pre>
+   *
+   * @return the number of connections pooled by the http client once done, which also counts the
+   *     connections to other hosts of a shared {@code httpClient}
+   * @throws IncogniaException if the token cannot be obtained or the api cannot be reached
+   */
+  public int warmUp() throws IncogniaException {
+    return tokenAwareNetworkingClient.warmUp(maxConnections);
+  }
+
+  /**
+   * Changes the limits of concurrent asynchronous requests of this instance. Takes effect
+   * immediately: raising a limit promotes queued requests, lowering it lets in-flight requests
+   * finish and holds new ones back until the instance is under the new limit.
+   *
+   * @param maxRequests the maximum number of concurrent asynchronous requests
+   * @param maxRequestsPerHost the maximum number of concurrent asynchronous requests to the
+   *     Incognia API host
+   * @throws IllegalArgumentException if any limit is not positive
+   * @throws IllegalStateException if the instance was created with a shared {@code httpClient},
+   *     whose dispatcher every instance sharing it uses
+   */
+  public void updateDispatcherLimits(int maxRequests, int maxRequestsPerHost) {
+    Asserts.assertPositive(maxRequests, "max requests");
+    Asserts.assertPositive(maxRequestsPerHost, "max requests per host");
+    if (sharedHttpClient) {
+      throw new IllegalStateException(
+          "dispatcher limits of a shared 'http client' cannot be updated through one instance");
+    }
+    Dispatcher dispatcher = httpClient.dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
   }
 
   /**
@@ -190,29 +428,21 @@ public class IncogniaAPI {
    * @throws IncogniaException in case of unexpected errors
    */
   public SignupAssessment registerSignup(RegisterSignupRequest request) throws IncogniaException {
-    Asserts.assertNotNull(request, "register signup request");
-    Optional<Address> address = Optional.ofNullable(request.getAddress());
-    PostSignupRequestBody postSignupRequestBody =
-        PostSignupRequestBody.builder()
-            .installationId(request.getInstallationId())
-            .requestToken(request.getRequestToken())
-            .appVersion(request.getAppVersion())
-            .deviceOs(
-                Optional.ofNullable(request.getDeviceOs()).map(String::toLowerCase).orElse(null))
-            .addressLine(address.map(Address::getAddressLine).orElse(null))
-            .structuredAddress(address.map(Address::getStructuredAddress).orElse(null))
-            .addressCoordinates(address.map(Address::getCoordinates).orElse(null))
-            .externalId(request.getExternalId())
-            .policyId(request.getPolicyId())
-            .accountId(request.getAccountId())
-            .additionalLocations(request.getAdditionalLocations())
-            .customProperties(request.getCustomProperties())
-            .personId(request.getPersonId())
-            .tenantId(request.getTenantId())
-            .relatedWebRequestToken(request.getRelatedWebRequestToken())
-            .build();
-    return tokenAwareNetworkingClient.doPost(
-        "api/v2/onboarding/signups", postSignupRequestBody, SignupAssessment.class);
+    return client().doPost(SIGNUPS_PATH, signupBody(request), SignupAssessment.class);
+  }
+
+  /**
+   * Asynchronous version of {@link #registerSignup(RegisterSignupRequest)}. The calling thread is
+   * not blocked while the request is in flight.
+   *
+   * @param request the {@link RegisterSignupRequest} model that contains the properties we need to
+   *     make an assessment.
+   * @return a future completed with the assessment, or completed exceptionally with an {@link
+   *     IncogniaAPIException} in case of api errors or an {@link IncogniaException} in case of
+   *     unexpected errors
+   */
+  public CompletableFuture<SignupAssessment> registerSignupAsync(RegisterSignupRequest request) {
+    return client().doPostAsync(SIGNUPS_PATH, signupBody(request), SignupAssessment.class);
   }
 
   /**
@@ -246,36 +476,61 @@ public class IncogniaAPI {
    */
   public TransactionAssessment registerLogin(RegisterLoginRequest request)
       throws IncogniaException {
-    Asserts.assertNotNull(request, "register login request");
-    Asserts.assertNotEmpty(request.getAccountId(), "account id");
-    PostTransactionRequestBody requestBody =
-        PostTransactionRequestBody.builder()
-            .installationId(request.getInstallationId())
-            .requestToken(request.getRequestToken())
-            .appVersion(request.getAppVersion())
-            .location(request.getLocation())
-            .deviceOs(
-                Optional.ofNullable(request.getDeviceOs()).map(String::toLowerCase).orElse(null))
-            .accountId(request.getAccountId())
-            .externalId(request.getExternalId())
-            .policyId(request.getPolicyId())
-            .relatedAccountId(request.getRelatedAccountId())
-            .customProperties(request.getCustomProperties())
-            .personId(request.getPersonId())
-            .tenantId(request.getTenantId())
-            .relatedWebRequestToken(request.getRelatedWebRequestToken())
-            .type("login")
-            .build();
+    return registerLogin(request, DEFAULT_REQUEST_OPTIONS);
+  }
 
-    Map<String, String> queryParameters = new HashMap<>();
-    if (request.shouldEvaluateTransaction() != null) {
-      queryParameters.put(EVALUATION_PARAMETER, request.shouldEvaluateTransaction().toString());
-    }
-    return tokenAwareNetworkingClient.doPost(
-        "api/v2/authentication/transactions",
-        requestBody,
-        TransactionAssessment.class,
-        queryParameters);
+  /**
+   * Same as {@link #registerLogin(RegisterLoginRequest)}, but bounded by the timeout in {@code
+   * options} instead of the client's call timeout. The timeout covers the whole call, including the
+   * time spent waiting for a bulkhead permit and, when hedging is enabled, every attempt.
+   *
+   * @param request the {@link RegisterLoginRequest} model with the properties we need to make the
+   *     assessment
+   * @param options the options of this call
+   * @return the assessment for the login
+   * @throws IncogniaAPIException in case of api errors
+   * @throws IncogniaException in case of unexpected errors, including the timeout expiring
+   */
+  public TransactionAssessment registerLogin(RegisterLoginRequest request, RequestOptions options)
+      throws IncogniaException {
+    return postLogin(
+        loginBody(request),
+        evaluationQueryParameters(request.shouldEvaluateTransaction()),
+        Deadline.from(options));
+  }
+
+  /**
+   * Asynchronous version of {@link #registerLogin(RegisterLoginRequest)}. The calling thread is not
+   * blocked while the request is in flight.
+   *
+   * @param request the {@link RegisterLoginRequest} model with the properties we need to make the
+   *     assessment
+   * @return a future completed with the assessment for the login, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors
+   */
+  public CompletableFuture<TransactionAssessment> registerLoginAsync(RegisterLoginRequest request) {
+    return registerLoginAsync(request, DEFAULT_REQUEST_OPTIONS);
+  }
+
+  /**
+   * Same as {@link #registerLoginAsync(RegisterLoginRequest)}, but bounded by the timeout in {@code
+   * options} instead of the client's call timeout. Cancelling the returned future cancels the
+   * underlying http call and releases its connection.
+   *
+   * @param request the {@link RegisterLoginRequest} model with the properties we need to make the
+   *     assessment
+   * @param options the options of this call
+   * @return a future completed with the assessment for the login, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors, including the timeout expiring
+   */
+  public CompletableFuture<TransactionAssessment> registerLoginAsync(
+      RegisterLoginRequest request, RequestOptions options) {
+    return postLoginAsync(
+        loginBody(request),
+        evaluationQueryParameters(request.shouldEvaluateTransaction()),
+        Deadline.from(options));
   }
 
   /**
@@ -309,33 +564,63 @@ public class IncogniaAPI {
    */
   public TransactionAssessment registerWebLogin(RegisterWebLoginRequest request)
       throws IncogniaException {
-    Asserts.assertNotNull(request, "register login request");
-    Asserts.assertNotEmpty(request.getAccountId(), "account id");
-    Asserts.assertNotEmpty(
-        Optional.ofNullable(request.getRequestToken()).orElseGet(request::getSessionToken),
-        "request token");
-    PostTransactionRequestBody requestBody =
-        PostTransactionRequestBody.builder()
-            .accountId(request.getAccountId())
-            .externalId(request.getExternalId())
-            .sessionToken(request.getSessionToken())
-            .requestToken(request.getRequestToken())
-            .policyId(request.getPolicyId())
-            .customProperties(request.getCustomProperties())
-            .personId(request.getPersonId())
-            .tenantId(request.getTenantId())
-            .type("login")
-            .build();
+    return registerWebLogin(request, DEFAULT_REQUEST_OPTIONS);
+  }
 
-    Map<String, String> queryParameters = new HashMap<>();
-    if (request.shouldEvaluateTransaction() != null) {
-      queryParameters.put(EVALUATION_PARAMETER, request.shouldEvaluateTransaction().toString());
-    }
-    return tokenAwareNetworkingClient.doPost(
-        "api/v2/authentication/transactions",
-        requestBody,
-        TransactionAssessment.class,
-        queryParameters);
+  /**
+   * Same as {@link #registerWebLogin(RegisterWebLoginRequest)}, but bounded by the timeout in
+   * {@code options} instead of the client's call timeout. The timeout covers the whole call,
+   * including the time spent waiting for a bulkhead permit and, when hedging is enabled, every
+   * attempt.
+   *
+   * @param request the {@link RegisterWebLoginRequest} model with the properties we need to make
+   *     the assessment
+   * @param options the options of this call
+   * @return the assessment for the login
+   * @throws IncogniaAPIException in case of api errors
+   * @throws IncogniaException in case of unexpected errors, including the timeout expiring
+   */
+  public TransactionAssessment registerWebLogin(
+      RegisterWebLoginRequest request, RequestOptions options) throws IncogniaException {
+    return postLogin(
+        webLoginBody(request),
+        evaluationQueryParameters(request.shouldEvaluateTransaction()),
+        Deadline.from(options));
+  }
+
+  /**
+   * Asynchronous version of {@link #registerWebLogin(RegisterWebLoginRequest)}. The calling thread
+   * is not blocked while the request is in flight.
+   *
+   * @param request the {@link RegisterWebLoginRequest} model with the properties we need to make
+   *     the assessment
+   * @return a future completed with the assessment for the login, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors
+   */
+  public CompletableFuture<TransactionAssessment> registerWebLoginAsync(
+      RegisterWebLoginRequest request) {
+    return registerWebLoginAsync(request, DEFAULT_REQUEST_OPTIONS);
+  }
+
+  /**
+   * Same as {@link #registerWebLoginAsync(RegisterWebLoginRequest)}, but bounded by the timeout in
+   * {@code options} instead of the client's call timeout. Cancelling the returned future cancels
+   * the underlying http call and releases its connection.
+   *
+   * @param request the {@link RegisterWebLoginRequest} model with the properties we need to make
+   *     the assessment
+   * @param options the options of this call
+   * @return a future completed with the assessment for the login, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors, including the timeout expiring
+   */
+  public CompletableFuture<TransactionAssessment> registerWebLoginAsync(
+      RegisterWebLoginRequest request, RequestOptions options) {
+    return postLoginAsync(
+        webLoginBody(request),
+        evaluationQueryParameters(request.shouldEvaluateTransaction()),
+        Deadline.from(options));
   }
 
   /**
@@ -363,23 +648,22 @@ public class IncogniaAPI {
    */
   public SignupAssessment registerWebSignup(RegisterWebSignupRequest request)
       throws IncogniaException {
-    Asserts.assertNotNull(request, "register signup request");
-    Asserts.assertNotEmpty(
-        Optional.ofNullable(request.getRequestToken()).orElseGet(request::getSessionToken),
-        "request token");
-    PostSignupRequestBody postSignupRequestBody =
-        PostSignupRequestBody.builder()
-            .sessionToken(request.getSessionToken())
-            .requestToken(request.getRequestToken())
-            .externalId(request.getExternalId())
-            .policyId(request.getPolicyId())
-            .accountId(request.getAccountId())
-            .customProperties(request.getCustomProperties())
-            .personId(request.getPersonId())
-            .tenantId(request.getTenantId())
-            .build();
-    return tokenAwareNetworkingClient.doPost(
-        "api/v2/onboarding/signups", postSignupRequestBody, SignupAssessment.class);
+    return client().doPost(SIGNUPS_PATH, webSignupBody(request), SignupAssessment.class);
+  }
+
+  /**
+   * Asynchronous version of {@link #registerWebSignup(RegisterWebSignupRequest)}. The calling
+   * thread is not blocked while the request is in flight.
+   *
+   * @param request the {@link RegisterWebSignupRequest} model that contains the properties we need
+   *     to make an assessment.
+   * @return a future completed with the assessment, or completed exceptionally with an {@link
+   *     IncogniaAPIException} in case of api errors or an {@link IncogniaException} in case of
+   *     unexpected errors
+   */
+  public CompletableFuture<SignupAssessment> registerWebSignupAsync(
+      RegisterWebSignupRequest request) {
+    return client().doPostAsync(SIGNUPS_PATH, webSignupBody(request), SignupAssessment.class);
   }
 
   /**
@@ -453,45 +737,134 @@ public class IncogniaAPI {
    */
   public TransactionAssessment registerPayment(RegisterPaymentRequest request)
       throws IncogniaException {
-    Asserts.assertNotNull(request, "register payment request");
-    Asserts.assertNotEmpty(request.getAccountId(), "account id");
-    List<TransactionAddress> transactionAddresses =
-        addressMapToTransactionAddresses(request.getAddresses());
-    PostTransactionRequestBody requestBody =
-        PostTransactionRequestBody.builder()
-            .installationId(request.getInstallationId())
-            .requestToken(request.getRequestToken())
-            .appVersion(request.getAppVersion())
-            .deviceOs(
-                Optional.ofNullable(request.getDeviceOs()).map(String::toLowerCase).orElse(null))
-            .accountId(request.getAccountId())
-            .externalId(request.getExternalId())
-            .policyId(request.getPolicyId())
-            .type("payment")
-            .addresses(transactionAddresses)
-            .paymentValue(request.getPaymentValue())
-            .paymentMethods(request.getPaymentMethods())
-            .location(request.getLocation())
-            .storeId(request.getStoreId())
-            .customProperties(request.getCustomProperties())
-            .coupon(request.getCoupon())
-            .personId(request.getPersonId())
-            .debtorAccount(request.getDebtorAccount())
-            .creditorAccount(request.getCreditorAccount())
-            .tenantId(request.getTenantId())
-            .relatedWebRequestToken(request.getRelatedWebRequestToken())
-            .build();
+    return registerPayment(request, DEFAULT_REQUEST_OPTIONS);
+  }
 
-    Map<String, String> queryParameters = new HashMap<>();
-    if (request.shouldEvaluateTransaction() != null) {
-      queryParameters.put(EVALUATION_PARAMETER, request.shouldEvaluateTransaction().toString());
-    }
+  /**
+   * Same as {@link #registerPayment(RegisterPaymentRequest)}, but bounded by the timeout in {@code
+   * options} instead of the client's call timeout. The timeout covers the whole call, including the
+   * time spent waiting for a bulkhead permit.
+   *
+   * @param request the {@link RegisterPaymentRequest} model with the properties we need to make the
+   *     assessment
+   * @param options the options of this call
+   * @return the assessment for the payment
+   * @throws IncogniaAPIException in case of api errors
+   * @throws IncogniaException in case of unexpected errors, including the timeout expiring
+   */
+  public TransactionAssessment registerPayment(
+      RegisterPaymentRequest request, RequestOptions options) throws IncogniaException {
+    return client()
+        .doPost(
+            TRANSACTIONS_PATH,
+            paymentBody(request),
+            TransactionAssessment.class,
+            evaluationQueryParameters(request.shouldEvaluateTransaction()),
+            Deadline.from(options),
+            RequestPriority.CRITICAL);
+  }
+
+  /**
+   * Asynchronous version of {@link #registerPayment(RegisterPaymentRequest)}. The calling thread is
+   * not blocked while the request is in flight.
+   *
+   * @param request the {@link RegisterPaymentRequest} with the fields we use to make an assessment
+   * @return a future completed with the payment's risk assessment, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors
+   */
+  public CompletableFuture<TransactionAssessment> registerPaymentAsync(
+      RegisterPaymentRequest request) {
+    return registerPaymentAsync(request, DEFAULT_REQUEST_OPTIONS);
+  }
+
+  /**
+   * Same as {@link #registerPaymentAsync(RegisterPaymentRequest)}, but bounded by the timeout in
+   * {@code options} instead of the client's call timeout. Cancelling the returned future cancels
+   * the underlying http call and releases its connection.
+   *
+   * @param request the {@link RegisterPaymentRequest} model with the properties we need to make the
+   *     assessment
+   * @param options the options of this call
+   * @return a future completed with the assessment for the payment, or completed exceptionally with
+   *     an {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in
+   *     case of unexpected errors, including the timeout expiring
+   */
+  public CompletableFuture<TransactionAssessment> registerPaymentAsync(
+      RegisterPaymentRequest request, RequestOptions options) {
+    return client()
+        .doPostAsync(
+            TRANSACTIONS_PATH,
+            paymentBody(request),
+            TransactionAssessment.class,
+            evaluationQueryParameters(request.shouldEvaluateTransaction()),
+            Deadline.from(options),
+            RequestPriority.CRITICAL);
+  }
+
+  /**
+   * Registers every payment produced by {@code requests}, keeping at most {@code maxInFlight}
+   * requests running at a time. The iterator is only advanced when a previous request finishes and
+   * its result was handed to the listener, so the source is consumed at the pace the api and the
+   * listener can sustain and memory usage stays bounded. Example:
+   *
+   * <pre>{@code
+   * IncogniaAPI api = IncogniaAPI.init("client-id", "client-secret");
+   * api.registerPayments(
+   *         paymentRequests.iterator(),
+   *         32,
+   *         new AssessmentListener<RegisterPaymentRequest, TransactionAssessment>() {
+   *           public void onAssessment(RegisterPaymentRequest request, TransactionAssessment assessment) {
+   *             //Use the assessment
+   *           }
+   *
+   *           public void onError(RegisterPaymentRequest request, Throwable throwable) {
+   *             //Some error happened for this request
+   *           }
+   *         })
+   *     .join();
+   * }</pre>
+   *
+   * @param requests the source of {@link RegisterPaymentRequest}s. It is read from the threads
+   *     completing the requests, so it must not block for long.
+   * @param maxInFlight the maximum number of concurrent requests
+   * @param listener the listener notified of each outcome
+   * @return a future completed when all requests have finished, or completed exceptionally if the
+   *     iterator or the listener throws, once the requests already running have finished
+   */
+  public CompletableFuture<Void> registerPayments(
+      Iterator<RegisterPaymentRequest> requests,
+      int maxInFlight,
+      AssessmentListener<RegisterPaymentRequest, TransactionAssessment> listener) {
+    return registerAll(requests, maxInFlight, this::registerPaymentAsync, listener);
+  }
+
+  /**
+   * Registers every login produced by {@code requests}, keeping at most {@code maxInFlight}
+   * requests running at a time. See {@link #registerPayments(Iterator, int, AssessmentListener)}.
+   *
+   * @param requests the source of {@link RegisterLoginRequest}s
+   * @param maxInFlight the maximum number of concurrent requests
+   * @param listener the listener notified of each outcome
+   * @return a future completed when all requests have finished, or completed exceptionally if the
+   *     iterator or the listener throws, once the requests already running have finished
+   */
+  public CompletableFuture<Void> registerLogins(
+      Iterator<RegisterLoginRequest> requests,
+      int maxInFlight,
+      AssessmentListener<RegisterLoginRequest, TransactionAssessment> listener) {
+    return registerAll(requests, maxInFlight, this::registerLoginAsync, listener);
+  }
 
-    return tokenAwareNetworkingClient.doPost(
-        "api/v2/authentication/transactions",
-        requestBody,
-        TransactionAssessment.class,
-        queryParameters);
+  private static <T, R> CompletableFuture<Void> registerAll(
+      Iterator<T> requests,
+      int maxInFlight,
+      Function<T, CompletableFuture<R>> operation,
+      AssessmentListener<T, R> listener) {
+    Asserts.assertNotNull(requests, "requests");
+    Asserts.assertPositive(maxInFlight, "max in flight");
+    Asserts.assertNotNull(listener, "listener");
+    return new BoundedPipeline<>(requests, maxInFlight, operation, listener).start();
   }
 
   /**
@@ -537,42 +910,170 @@ public class IncogniaAPI {
       FeedbackIdentifiers identifiers,
       boolean dryRun)
       throws IncogniaException {
-    PostFeedbackRequestBody requestBody =
-        PostFeedbackRequestBody.builder()
-            .event(feedbackEvent)
-            .timestamp(timestamp.toEpochMilli())
-            .installationId(identifiers.getInstallationId())
-            .sessionToken(identifiers.getSessionToken())
-            .accountId(identifiers.getAccountId())
-            .loginId(identifiers.getLoginId())
-            .paymentId(identifiers.getPaymentId())
-            .signupId(identifiers.getSignupId())
-            .externalId(identifiers.getExternalId())
-            .requestToken(identifiers.getRequestToken())
-            .personId(identifiers.getPersonId())
-            .financialAccount(identifiers.getFinancialAccount())
-            .expiresAt(
-                Optional.ofNullable(identifiers.getExpiresAt()).map(Instant::toString).orElse(null))
-            .build();
+    client()
+        .doPost(
+            FEEDBACKS_PATH,
+            buildFeedbackRequestBody(feedbackEvent, timestamp, identifiers),
+            dryRunQueryParameters(dryRun),
+            RequestPriority.LOW);
+  }
+
+  /**
+   * Asynchronous version of {@link #registerFeedback(FeedbackEvent, Instant, FeedbackIdentifiers)}.
+   * The calling thread is not blocked while the request is in flight.
+   *
+   * @param feedbackEvent type of feedback event
+   * @param timestamp Instant when the fraud or event happened
+   * @param identifiers the user's identifiers
+   * @return a future completed when the feedback is registered, or completed exceptionally with an
+   *     {@link IncogniaAPIException} in case of api errors or an {@link IncogniaException} in case
+   *     of unexpected errors
+   */
+  public CompletableFuture<Void> registerFeedbackAsync(
+      FeedbackEvent feedbackEvent, Instant timestamp, FeedbackIdentifiers identifiers) {
+    return registerFeedbackAsync(feedbackEvent, timestamp, identifiers, false);
+  }
+
+  public CompletableFuture<Void> registerFeedbackAsync(
+      FeedbackEvent feedbackEvent,
+      Instant timestamp,
+      FeedbackIdentifiers identifiers,
+      boolean dryRun) {
+    return client()
+        .doPostAsync(
+            FEEDBACKS_PATH,
+            buildFeedbackRequestBody(feedbackEvent, timestamp, identifiers),
+            dryRunQueryParameters(dryRun),
+            RequestPriority.LOW);
+  }
+
+  private TransactionAssessment postLogin(
+      Object requestBody, Map<String, String> queryParameters, Deadline deadline)
+      throws IncogniaException {
+    if (loginHedgingPolicy != null) {
+      return await(postLoginAsync(requestBody, queryParameters, deadline));
+    }
+    return client()
+        .doPost(
+            TRANSACTIONS_PATH,
+            requestBody,
+            TransactionAssessment.class,
+            queryParameters,
+            deadline,
+            RequestPriority.HIGH);
+  }
+
+  private CompletableFuture<TransactionAssessment> postLoginAsync(
+      Object requestBody, Map<String, String> queryParameters, Deadline deadline) {
+    if (loginHedgingPolicy == null) {
+      return client()
+          .doPostAsync(
+              TRANSACTIONS_PATH,
+              requestBody,
+              TransactionAssessment.class,
+              queryParameters,
+              deadline,
+              RequestPriority.HIGH);
+    }
+    return loginHedgingPolicy.execute(
+        () ->
+            client()
+                .doPostAsync(
+                    TRANSACTIONS_PATH,
+                    requestBody,
+                    TransactionAssessment.class,
+                    queryParameters,
+                    deadline,
+                    RequestPriority.HIGH));
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws IncogniaException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IncogniaException) {
+        throw (IncogniaException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IncogniaException("unexpected error", cause);
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new IncogniaException("interrupted while waiting for the response", e);
+    }
+  }
+
+  // The codecs created by JsonCodecs write the requests straight to the wire format; other codecs
+  // are handed the request bodies the requests are copied into, so they only map plain properties.
+
+  private Object signupBody(RegisterSignupRequest request) {
+    Asserts.assertNotNull(request, "register signup request");
+    return wireRequestBodies ? WireRequestBodies.signup(request) : request;
+  }
+
+  private Object webSignupBody(RegisterWebSignupRequest request) {
+    Asserts.assertNotNull(request, "register signup request");
+    Asserts.assertNotEmpty(
+        request.getRequestToken() != null ? request.getRequestToken() : request.getSessionToken(),
+        "request token");
+    return wireRequestBodies ? WireRequestBodies.webSignup(request) : request;
+  }
+
+  private Object loginBody(RegisterLoginRequest request) {
+    Asserts.assertNotNull(request, "register login request");
+    Asserts.assertNotEmpty(request.getAccountId(), "account id");
+    return wireRequestBodies ? WireRequestBodies.login(request) : request;
+  }
+
+  private Object webLoginBody(RegisterWebLoginRequest request) {
+    Asserts.assertNotNull(request, "register login request");
+    Asserts.assertNotEmpty(request.getAccountId(), "account id");
+    Asserts.assertNotEmpty(
+        request.getRequestToken() != null ? request.getRequestToken() : request.getSessionToken(),
+        "request token");
+    return wireRequestBodies ? WireRequestBodies.webLogin(request) : request;
+  }
+
+  private Object paymentBody(RegisterPaymentRequest request) {
+    Asserts.assertNotNull(request, "register payment request");
+    Asserts.assertNotEmpty(request.getAccountId(), "account id");
+    return wireRequestBodies ? WireRequestBodies.payment(request) : request;
+  }
+
+  private PostFeedbackRequestBody buildFeedbackRequestBody(
+      FeedbackEvent feedbackEvent, Instant timestamp, FeedbackIdentifiers identifiers) {
+    return PostFeedbackRequestBody.builder()
+        .event(feedbackEvent)
+        .timestamp(timestamp.toEpochMilli())
+        .installationId(identifiers.getInstallationId())
+        .sessionToken(identifiers.getSessionToken())
+        .accountId(identifiers.getAccountId())
+        .loginId(identifiers.getLoginId())
+        .paymentId(identifiers.getPaymentId())
+        .signupId(identifiers.getSignupId())
+        .externalId(identifiers.getExternalId())
+        .requestToken(identifiers.getRequestToken())
+        .personId(identifiers.getPersonId())
+        .financialAccount(identifiers.getFinancialAccount())
+        .expiresAt(
+            Optional.ofNullable(identifiers.getExpiresAt()).map(Instant::toString).orElse(null))
+        .build();
+  }
+
+  private static Map<String, String> evaluationQueryParameters(Boolean evaluateTransaction) {
+    Map<String, String> queryParameters = new HashMap<>();
+    if (evaluateTransaction != null) {
+      queryParameters.put(EVALUATION_PARAMETER, evaluateTransaction.toString());
+    }
+    return queryParameters;
+  }
 
+  private static Map<String, String> dryRunQueryParameters(boolean dryRun) {
     Map<String, String> queryParameters = new HashMap<>();
     queryParameters.put(DRY_RUN_PARAMETER, String.valueOf(dryRun));
-    tokenAwareNetworkingClient.doPost("api/v2/feedbacks", requestBody, queryParameters);
-  }
-
-  @NotNull
-  private List<TransactionAddress> addressMapToTransactionAddresses(
-      Map<AddressType, Address> addresses) {
-    return addresses.entrySet().stream()
-        .map(
-            entry -> {
-              Address address = entry.getValue();
-              return new TransactionAddress(
-                  entry.getKey().name().toLowerCase(),
-                  address.getAddressLine(),
-                  address.getStructuredAddress(),
-                  address.getCoordinates());
-            })
-        .collect(Collectors.toList());
+    return queryParameters;
   }
 }
@@ -0,0 +1,69 @@
+package com.incognia.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.incognia.api.clients.JacksonJsonCodec;
+import com.incognia.api.clients.JsonAccessorModules;
+import com.incognia.api.clients.JsonCodec;
+import com.incognia.api.clients.ObjectMapperFactory;
+import com.incognia.common.utils.Asserts;
+import lombok.experimental.UtilityClass;
+
+/** Creates the Jackson based {@link JsonCodec}s the api can be called with. */
+@UtilityClass
+public class JsonCodecs {
+  private static final ObjectMapper OBJECT_MAPPER =
+      withApiFormat(ObjectMapperFactory.OBJECT_MAPPER);
+  private static final JsonCodec DEFAULT_CODEC = new ApiFormatJsonCodec(OBJECT_MAPPER);
+
+  /** Returns the codec used when no other is configured. */
+  public static JsonCodec defaultCodec() {
+    return DEFAULT_CODEC;
+  }
+
+  /**
+   * Returns a codec backed by a copy of {@code objectMapper}, so that an application's tuned
+   * mapper, with its modules and stream settings, can be reused. The copy is set up to write and
+   * read the api's wire format, so {@code objectMapper} itself is not modified.
+   *
+   * @param objectMapper the mapper to copy
+   * @return the codec
+   */
+  public static JsonCodec jackson(ObjectMapper objectMapper) {
+    Asserts.assertNotNull(objectMapper, "object mapper");
+    return new ApiFormatJsonCodec(withApiFormat(objectMapper));
+  }
+
+  /** Returns the default codec with the generated accessors of {@link JsonAccessorModules}. */
+  static JsonCodec withGeneratedAccessors() {
+    return new ApiFormatJsonCodec(JsonAccessorModules.withGeneratedAccessors(OBJECT_MAPPER));
+  }
+
+  /**
+   * Tells whether {@code jsonCodec} writes the register requests in the wire format itself, which
+   * only the codecs created here do. Other codecs are handed the request bodies instead.
+   */
+  static boolean writesRequests(JsonCodec jsonCodec) {
+    return jsonCodec instanceof ApiFormatJsonCodec;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static ObjectMapper withApiFormat(ObjectMapper objectMapper) {
+    return objectMapper
+        .copy()
+        .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+        .setSerializationInclusion(Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .registerModule(RequestBodySerializers.MODULE)
+        .registerModule(ResponseDeserializers.MODULE);
+  }
+
+  /** A codec whose mapper has {@link RequestBodySerializers#MODULE} registered. */
+  private static final class ApiFormatJsonCodec extends JacksonJsonCodec {
+    private ApiFormatJsonCodec(ObjectMapper objectMapper) {
+      super(objectMapper);
+    }
+  }
+}
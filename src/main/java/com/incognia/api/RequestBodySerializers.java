@@ -0,0 +1,273 @@
+package com.incognia.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.incognia.common.Address;
+import com.incognia.feedback.PostFeedbackRequestBody;
+import com.incognia.onboarding.PostSignupRequestBody;
+import com.incognia.onboarding.RegisterSignupRequest;
+import com.incognia.onboarding.RegisterWebSignupRequest;
+import com.incognia.transaction.AddressType;
+import com.incognia.transaction.PostTransactionRequestBody;
+import com.incognia.transaction.login.RegisterLoginRequest;
+import com.incognia.transaction.login.RegisterWebLoginRequest;
+import com.incognia.transaction.payment.RegisterPaymentRequest;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Serializers that write the register requests in the wire format of {@link
+ * PostTransactionRequestBody} and {@link PostSignupRequestBody} straight from the requests, so they
+ * are not copied into those bodies first, and that write {@link PostFeedbackRequestBody} field by
+ * field instead of through bean introspection. {@link #MODULE} is only registered on the mapper
+ * used to send the requests, so serializing a request elsewhere is not affected.
+ */
+final class RequestBodySerializers {
+  static final SimpleModule MODULE =
+      new SimpleModule("incognia-request-bodies")
+          .addSerializer(new SignupSerializer())
+          .addSerializer(new WebSignupSerializer())
+          .addSerializer(new LoginSerializer())
+          .addSerializer(new WebLoginSerializer())
+          .addSerializer(new PaymentSerializer())
+          .addSerializer(new FeedbackSerializer());
+
+  private RequestBodySerializers() {}
+
+  private static final class SignupSerializer extends StdSerializer<RegisterSignupRequest> {
+    private SignupSerializer() {
+      super(RegisterSignupRequest.class);
+    }
+
+    @Override
+    public void serialize(
+        RegisterSignupRequest request, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      Address address = request.getAddress();
+      gen.writeStartObject();
+      writeString(gen, "installation_id", request.getInstallationId());
+      writeString(gen, "request_token", request.getRequestToken());
+      if (address != null) {
+        writeString(gen, "address_line", address.getAddressLine());
+      }
+      writeString(gen, "app_version", request.getAppVersion());
+      writeString(gen, "device_os", toLowerCase(request.getDeviceOs()));
+      if (address != null) {
+        writeValue(gen, provider, "structured_address", address.getStructuredAddress());
+        writeValue(gen, provider, "address_coordinates", address.getCoordinates());
+      }
+      writeString(gen, "external_id", request.getExternalId());
+      writeString(gen, "policy_id", request.getPolicyId());
+      writeString(gen, "account_id", request.getAccountId());
+      writeValue(gen, provider, "additional_locations", request.getAdditionalLocations());
+      writeValue(gen, provider, "person_id", request.getPersonId());
+      writeNonEmpty(gen, provider, "custom_properties", request.getCustomProperties());
+      writeString(gen, "related_web_request_token", request.getRelatedWebRequestToken());
+      writeString(gen, "tenant_id", request.getTenantId());
+      gen.writeEndObject();
+    }
+  }
+
+  private static final class WebSignupSerializer extends StdSerializer<RegisterWebSignupRequest> {
+    private WebSignupSerializer() {
+      super(RegisterWebSignupRequest.class);
+    }
+
+    @Override
+    public void serialize(
+        RegisterWebSignupRequest request, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      writeString(gen, "session_token", request.getSessionToken());
+      writeString(gen, "request_token", request.getRequestToken());
+      writeString(gen, "external_id", request.getExternalId());
+      writeString(gen, "policy_id", request.getPolicyId());
+      writeString(gen, "account_id", request.getAccountId());
+      writeValue(gen, provider, "person_id", request.getPersonId());
+      writeNonEmpty(gen, provider, "custom_properties", request.getCustomProperties());
+      writeString(gen, "tenant_id", request.getTenantId());
+      gen.writeEndObject();
+    }
+  }
+
+  private static final class LoginSerializer extends StdSerializer<RegisterLoginRequest> {
+    private LoginSerializer() {
+      super(RegisterLoginRequest.class);
+    }
+
+    @Override
+    public void serialize(
+        RegisterLoginRequest request, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      writeString(gen, "installation_id", request.getInstallationId());
+      writeString(gen, "request_token", request.getRequestToken());
+      writeString(gen, "app_version", request.getAppVersion());
+      writeString(gen, "device_os", toLowerCase(request.getDeviceOs()));
+      writeString(gen, "account_id", request.getAccountId());
+      writeString(gen, "policy_id", request.getPolicyId());
+      gen.writeStringField("type", "login");
+      writeString(gen, "external_id", request.getExternalId());
+      writeString(gen, "related_account_id", request.getRelatedAccountId());
+      writeValue(gen, provider, "location", request.getLocation());
+      writeValue(gen, provider, "person_id", request.getPersonId());
+      writeNonEmpty(gen, provider, "custom_properties", request.getCustomProperties());
+      writeString(gen, "related_web_request_token", request.getRelatedWebRequestToken());
+      writeString(gen, "tenant_id", request.getTenantId());
+      gen.writeEndObject();
+    }
+  }
+
+  private static final class WebLoginSerializer extends StdSerializer<RegisterWebLoginRequest> {
+    private WebLoginSerializer() {
+      super(RegisterWebLoginRequest.class);
+    }
+
+    @Override
+    public void serialize(
+        RegisterWebLoginRequest request, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      writeString(gen, "request_token", request.getRequestToken());
+      writeString(gen, "account_id", request.getAccountId());
+      writeString(gen, "session_token", request.getSessionToken());
+      writeString(gen, "policy_id", request.getPolicyId());
+      gen.writeStringField("type", "login");
+      writeString(gen, "external_id", request.getExternalId());
+      writeValue(gen, provider, "person_id", request.getPersonId());
+      writeNonEmpty(gen, provider, "custom_properties", request.getCustomProperties());
+      writeString(gen, "tenant_id", request.getTenantId());
+      gen.writeEndObject();
+    }
+  }
+
+  private static final class PaymentSerializer extends StdSerializer<RegisterPaymentRequest> {
+    private PaymentSerializer() {
+      super(RegisterPaymentRequest.class);
+    }
+
+    @Override
+    public void serialize(
+        RegisterPaymentRequest request, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      writeString(gen, "installation_id", request.getInstallationId());
+      writeString(gen, "request_token", request.getRequestToken());
+      writeString(gen, "app_version", request.getAppVersion());
+      writeString(gen, "device_os", toLowerCase(request.getDeviceOs()));
+      writeString(gen, "account_id", request.getAccountId());
+      writeString(gen, "policy_id", request.getPolicyId());
+      gen.writeStringField("type", "payment");
+      writeString(gen, "store_id", request.getStoreId());
+      writeString(gen, "external_id", request.getExternalId());
+      writeValue(gen, provider, "location", request.getLocation());
+      writeValue(gen, provider, "coupon", request.getCoupon());
+      writeValue(gen, provider, "person_id", request.getPersonId());
+      writeValue(gen, provider, "debtor_account", request.getDebtorAccount());
+      writeValue(gen, provider, "creditor_account", request.getCreditorAccount());
+      writeAddresses(gen, provider, request.getAddresses());
+      writeValue(gen, provider, "payment_value", request.getPaymentValue());
+      writeNonEmpty(gen, provider, "payment_methods", request.getPaymentMethods());
+      writeNonEmpty(gen, provider, "custom_properties", request.getCustomProperties());
+      writeString(gen, "related_web_request_token", request.getRelatedWebRequestToken());
+      writeString(gen, "tenant_id", request.getTenantId());
+      gen.writeEndObject();
+    }
+
+    /** Writes the addresses as the list of {@code TransactionAddress} the api expects. */
+    private static void writeAddresses(
+        JsonGenerator gen, SerializerProvider provider, Map<AddressType, Address> addresses)
+        throws IOException {
+      if (addresses == null || addresses.isEmpty()) {
+        return;
+      }
+      gen.writeArrayFieldStart("addresses");
+      for (Map.Entry<AddressType, Address> entry : addresses.entrySet()) {
+        Address address = entry.getValue();
+        gen.writeStartObject();
+        gen.writeStringField("type", entry.getKey().name().toLowerCase());
+        writeString(gen, "address_line", address.getAddressLine());
+        writeValue(gen, provider, "structured_address", address.getStructuredAddress());
+        writeValue(gen, provider, "address_coordinates", address.getCoordinates());
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+    }
+  }
+
+  private static final class FeedbackSerializer extends StdSerializer<PostFeedbackRequestBody> {
+    private FeedbackSerializer() {
+      super(PostFeedbackRequestBody.class);
+    }
+
+    @Override
+    public void serialize(
+        PostFeedbackRequestBody body, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      writeValue(gen, provider, "event", body.getEvent());
+      if (body.getTimestamp() != null) {
+        gen.writeNumberField("timestamp", body.getTimestamp());
+      }
+      writeString(gen, "account_id", body.getAccountId());
+      writeString(gen, "external_id", body.getExternalId());
+      writeString(gen, "installation_id", body.getInstallationId());
+      writeString(gen, "session_token", body.getSessionToken());
+      writeString(gen, "request_token", body.getRequestToken());
+      writeString(gen, "payment_id", body.getPaymentId());
+      writeString(gen, "login_id", body.getLoginId());
+      writeString(gen, "signup_id", body.getSignupId());
+      writeString(gen, "expires_at", body.getExpiresAt());
+      writeValue(gen, provider, "person_id", body.getPersonId());
+      writeValue(gen, provider, "financial_account", body.getFinancialAccount());
+      gen.writeEndObject();
+    }
+  }
+
+  private static String toLowerCase(String value) {
+    return value == null ? null : value.toLowerCase();
+  }
+
+  private static void writeString(JsonGenerator gen, String name, String value) throws IOException {
+    if (value != null) {
+      gen.writeStringField(name, value);
+    }
+  }
+
+  private static void writeValue(
+      JsonGenerator gen, SerializerProvider provider, String name, Object value)
+      throws IOException {
+    if (value != null) {
+      provider.defaultSerializeField(name, value, gen);
+    }
+  }
+
+  private static void writeNonEmpty(
+      JsonGenerator gen, SerializerProvider provider, String name, Collection<?> value)
+      throws IOException {
+    if (value != null && !value.isEmpty()) {
+      provider.defaultSerializeField(name, value, gen);
+    }
+  }
+
+  /**
+   * Writes {@code value} unless it is empty. Like the {@code NON_EMPTY} properties of the request
+   * bodies, entries with null values are kept.
+   */
+  private static void writeNonEmpty(
+      JsonGenerator gen, SerializerProvider provider, String name, Map<String, Object> value)
+      throws IOException {
+    if (value == null || value.isEmpty()) {
+      return;
+    }
+    gen.writeObjectFieldStart(name);
+    for (Map.Entry<String, Object> entry : value.entrySet()) {
+      gen.writeFieldName(entry.getKey());
+      provider.defaultSerializeValue(entry.getValue(), gen);
+    }
+    gen.writeEndObject();
+  }
+}
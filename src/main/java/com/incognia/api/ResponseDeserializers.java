@@ -0,0 +1,214 @@
+package com.incognia.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.incognia.common.Reason;
+import com.incognia.onboarding.SignupAssessment;
+import com.incognia.transaction.TransactionAssessment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hand-written deserializers for the assessments, read field by field from the parser so that
+ * Jackson neither introspects the assessment classes nor calls them reflectively. Unknown fields
+ * are skipped, as with the shared mapper.
+ */
+final class ResponseDeserializers {
+  static final SimpleModule MODULE =
+      new SimpleModule("incognia-responses")
+          .addDeserializer(TransactionAssessment.class, new TransactionAssessmentDeserializer())
+          .addDeserializer(SignupAssessment.class, new SignupAssessmentDeserializer());
+
+  private static final JavaType STRING_LIST_TYPE =
+      TypeFactory.defaultInstance().constructCollectionType(List.class, String.class);
+  private static final JavaType MAP_TYPE =
+      TypeFactory.defaultInstance().constructMapType(Map.class, String.class, Object.class);
+
+  private ResponseDeserializers() {}
+
+  private static final class TransactionAssessmentDeserializer
+      extends StdDeserializer<TransactionAssessment> {
+    private TransactionAssessmentDeserializer() {
+      super(TransactionAssessment.class);
+    }
+
+    @Override
+    public TransactionAssessment deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      TransactionAssessment.TransactionAssessmentBuilder builder = TransactionAssessment.builder();
+      for (JsonToken t = startObject(p, ctxt, this); t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+        String name = p.currentName();
+        p.nextToken();
+        switch (name) {
+          case "id":
+            builder.id(readUuid(p, ctxt));
+            break;
+          case "risk_assessment":
+            builder.riskAssessment(ctxt.readValue(p, Assessment.class));
+            break;
+          case "reasons":
+            builder.reasons(readReasons(p, ctxt, new ArrayList<>()));
+            break;
+          case "actions":
+            builder.actions(ctxt.readValue(p, STRING_LIST_TYPE));
+            break;
+          case "evidence":
+            builder.evidence(ctxt.readValue(p, MAP_TYPE));
+            break;
+          case "signals":
+            builder.signals(ctxt.readValue(p, MAP_TYPE));
+            break;
+          case "device_id":
+            builder.deviceId(p.getValueAsString());
+            break;
+          case "installation_id":
+            builder.installationId(p.getValueAsString());
+            break;
+          default:
+            p.skipChildren();
+        }
+      }
+      return builder.build();
+    }
+  }
+
+  private static final class SignupAssessmentDeserializer
+      extends StdDeserializer<SignupAssessment> {
+    private SignupAssessmentDeserializer() {
+      super(SignupAssessment.class);
+    }
+
+    @Override
+    public SignupAssessment deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      UUID id = null;
+      UUID requestId = null;
+      Assessment riskAssessment = null;
+      Set<Reason> reasons = null;
+      List<String> actions = null;
+      Map<String, Object> evidence = null;
+      Map<String, Object> signals = null;
+      String deviceId = null;
+      String installationId = null;
+      for (JsonToken t = startObject(p, ctxt, this); t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+        String name = p.currentName();
+        p.nextToken();
+        switch (name) {
+          case "id":
+            id = readUuid(p, ctxt);
+            break;
+          case "request_id":
+            requestId = readUuid(p, ctxt);
+            break;
+          case "risk_assessment":
+            riskAssessment = ctxt.readValue(p, Assessment.class);
+            break;
+          case "reasons":
+            reasons = readReasons(p, ctxt, new HashSet<>());
+            break;
+          case "actions":
+            actions = ctxt.readValue(p, STRING_LIST_TYPE);
+            break;
+          case "evidence":
+            evidence = ctxt.readValue(p, MAP_TYPE);
+            break;
+          case "signals":
+            signals = ctxt.readValue(p, MAP_TYPE);
+            break;
+          case "device_id":
+            deviceId = p.getValueAsString();
+            break;
+          case "installation_id":
+            installationId = p.getValueAsString();
+            break;
+          default:
+            p.skipChildren();
+        }
+      }
+      return new SignupAssessment(
+          id,
+          requestId,
+          riskAssessment,
+          reasons,
+          actions,
+          evidence,
+          signals,
+          deviceId,
+          installationId);
+    }
+  }
+
+  /** Moves past the start of an object and returns the token of its first field, if any. */
+  private static JsonToken startObject(
+      JsonParser p, DeserializationContext ctxt, StdDeserializer<?> deserializer)
+      throws IOException {
+    JsonToken t = p.currentToken();
+    if (t == JsonToken.START_OBJECT) {
+      return p.nextToken();
+    }
+    if (t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT) {
+      ctxt.handleUnexpectedToken(deserializer.handledType(), p);
+    }
+    return t;
+  }
+
+  private static UUID readUuid(JsonParser p, DeserializationContext ctxt) throws IOException {
+    String value = p.getValueAsString();
+    if (value == null) {
+      return null;
+    }
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      // reported as Jackson's own UUID deserializer does, so it surfaces as a read failure
+      throw ctxt.weirdStringException(value, UUID.class, e.getMessage());
+    }
+  }
+
+  private static <C extends Collection<Reason>> C readReasons(
+      JsonParser p, DeserializationContext ctxt, C reasons) throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (p.currentToken() != JsonToken.START_ARRAY) {
+      ctxt.handleUnexpectedToken(Reason.class, p);
+    }
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      reasons.add(readReason(p, ctxt));
+    }
+    return reasons;
+  }
+
+  private static Reason readReason(JsonParser p, DeserializationContext ctxt) throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (p.currentToken() != JsonToken.START_OBJECT) {
+      ctxt.handleUnexpectedToken(Reason.class, p);
+    }
+    Reason.ReasonBuilder builder = Reason.builder();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String name = p.currentName();
+      p.nextToken();
+      if ("code".equals(name)) {
+        builder.code(p.getValueAsString());
+      } else if ("source".equals(name)) {
+        builder.source(p.getValueAsString());
+      } else {
+        p.skipChildren();
+      }
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,139 @@
+package com.incognia.api;
+
+import com.incognia.common.Address;
+import com.incognia.onboarding.PostSignupRequestBody;
+import com.incognia.onboarding.RegisterSignupRequest;
+import com.incognia.onboarding.RegisterWebSignupRequest;
+import com.incognia.transaction.AddressType;
+import com.incognia.transaction.PostTransactionRequestBody;
+import com.incognia.transaction.TransactionAddress;
+import com.incognia.transaction.login.RegisterLoginRequest;
+import com.incognia.transaction.login.RegisterWebLoginRequest;
+import com.incognia.transaction.payment.RegisterPaymentRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies the register requests into the {@link PostSignupRequestBody} and {@link
+ * PostTransactionRequestBody} sent to the api, for codecs that do not know the requests. The result
+ * is written as the same JSON as {@link RequestBodySerializers} writes the requests.
+ */
+final class WireRequestBodies {
+  private WireRequestBodies() {}
+
+  static PostSignupRequestBody signup(RegisterSignupRequest request) {
+    Address address = request.getAddress();
+    return PostSignupRequestBody.builder()
+        .installationId(request.getInstallationId())
+        .requestToken(request.getRequestToken())
+        .appVersion(request.getAppVersion())
+        .deviceOs(toLowerCase(request.getDeviceOs()))
+        .addressLine(address == null ? null : address.getAddressLine())
+        .structuredAddress(address == null ? null : address.getStructuredAddress())
+        .addressCoordinates(address == null ? null : address.getCoordinates())
+        .externalId(request.getExternalId())
+        .policyId(request.getPolicyId())
+        .accountId(request.getAccountId())
+        .additionalLocations(request.getAdditionalLocations())
+        .customProperties(request.getCustomProperties())
+        .personId(request.getPersonId())
+        .tenantId(request.getTenantId())
+        .relatedWebRequestToken(request.getRelatedWebRequestToken())
+        .build();
+  }
+
+  static PostSignupRequestBody webSignup(RegisterWebSignupRequest request) {
+    return PostSignupRequestBody.builder()
+        .sessionToken(request.getSessionToken())
+        .requestToken(request.getRequestToken())
+        .externalId(request.getExternalId())
+        .policyId(request.getPolicyId())
+        .accountId(request.getAccountId())
+        .customProperties(request.getCustomProperties())
+        .personId(request.getPersonId())
+        .tenantId(request.getTenantId())
+        .build();
+  }
+
+  static PostTransactionRequestBody login(RegisterLoginRequest request) {
+    return PostTransactionRequestBody.builder()
+        .installationId(request.getInstallationId())
+        .requestToken(request.getRequestToken())
+        .appVersion(request.getAppVersion())
+        .location(request.getLocation())
+        .deviceOs(toLowerCase(request.getDeviceOs()))
+        .accountId(request.getAccountId())
+        .externalId(request.getExternalId())
+        .policyId(request.getPolicyId())
+        .relatedAccountId(request.getRelatedAccountId())
+        .customProperties(request.getCustomProperties())
+        .personId(request.getPersonId())
+        .tenantId(request.getTenantId())
+        .relatedWebRequestToken(request.getRelatedWebRequestToken())
+        .type("login")
+        .build();
+  }
+
+  static PostTransactionRequestBody webLogin(RegisterWebLoginRequest request) {
+    return PostTransactionRequestBody.builder()
+        .accountId(request.getAccountId())
+        .externalId(request.getExternalId())
+        .sessionToken(request.getSessionToken())
+        .requestToken(request.getRequestToken())
+        .policyId(request.getPolicyId())
+        .customProperties(request.getCustomProperties())
+        .personId(request.getPersonId())
+        .tenantId(request.getTenantId())
+        .type("login")
+        .build();
+  }
+
+  static PostTransactionRequestBody payment(RegisterPaymentRequest request) {
+    return PostTransactionRequestBody.builder()
+        .installationId(request.getInstallationId())
+        .requestToken(request.getRequestToken())
+        .appVersion(request.getAppVersion())
+        .deviceOs(toLowerCase(request.getDeviceOs()))
+        .accountId(request.getAccountId())
+        .externalId(request.getExternalId())
+        .policyId(request.getPolicyId())
+        .type("payment")
+        .addresses(toTransactionAddresses(request.getAddresses()))
+        .paymentValue(request.getPaymentValue())
+        .paymentMethods(request.getPaymentMethods())
+        .location(request.getLocation())
+        .storeId(request.getStoreId())
+        .customProperties(request.getCustomProperties())
+        .coupon(request.getCoupon())
+        .personId(request.getPersonId())
+        .debtorAccount(request.getDebtorAccount())
+        .creditorAccount(request.getCreditorAccount())
+        .tenantId(request.getTenantId())
+        .relatedWebRequestToken(request.getRelatedWebRequestToken())
+        .build();
+  }
+
+  private static List<TransactionAddress> toTransactionAddresses(
+      Map<AddressType, Address> addresses) {
+    if (addresses == null || addresses.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<TransactionAddress> transactionAddresses = new ArrayList<>(addresses.size());
+    for (Map.Entry<AddressType, Address> entry : addresses.entrySet()) {
+      Address address = entry.getValue();
+      transactionAddresses.add(
+          new TransactionAddress(
+              entry.getKey().name().toLowerCase(),
+              address.getAddressLine(),
+              address.getStructuredAddress(),
+              address.getCoordinates()));
+    }
+    return transactionAddresses;
+  }
+
+  private static String toLowerCase(String value) {
+    return value == null ? null : value.toLowerCase();
+  }
+}
@@ -0,0 +1,92 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.AdaptiveConcurrencyLimitOptions;
+import com.incognia.common.utils.Asserts;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of in-flight requests using an additive-increase/multiplicative-decrease
+ * algorithm. The limit grows by one for every request that completes under the latency threshold
+ * while the limiter is being used, and shrinks by {@code backoffRatio} whenever a request is slower
+ * than the threshold, times out or is rejected by an overloaded server. Requests over the limit are
+ * rejected immediately instead of queueing.
+ */
+public class AimdConcurrencyLimiter {
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+  private double limit;
+  private int inFlight;
+
+  public AimdConcurrencyLimiter(AdaptiveConcurrencyLimitOptions options) {
+    Asserts.assertNotNull(options, "adaptive concurrency limit options");
+    Asserts.assertPositive(options.getMinLimit(), "min limit");
+    Asserts.assertPositive(options.getLatencyThresholdMillis(), "latency threshold millis");
+    if (options.getMaxLimit() < options.getMinLimit()
+        || options.getInitialLimit() < options.getMinLimit()
+        || options.getInitialLimit() > options.getMaxLimit()) {
+      throw new IllegalArgumentException(
+          "'initial limit' must be between 'min limit' and 'max limit'");
+    }
+    if (options.getBackoffRatio() <= 0 || options.getBackoffRatio() >= 1) {
+      throw new IllegalArgumentException("'backoff ratio' must be between 0 and 1");
+    }
+    this.minLimit = options.getMinLimit();
+    this.maxLimit = options.getMaxLimit();
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(options.getLatencyThresholdMillis());
+    this.backoffRatio = options.getBackoffRatio();
+    this.limit = options.getInitialLimit();
+  }
+
+  /**
+   * Reserves a slot for a new request.
+   *
+   * @return false if the limit was reached and the request should be rejected
+   */
+  public synchronized boolean tryAcquire() {
+    if (inFlight >= getLimit()) {
+      return false;
+    }
+    inFlight++;
+    return true;
+  }
+
+  /**
+   * Releases the slot of a request that got a response from the server.
+   *
+   * @param latencyNanos how long the request took
+   */
+  public synchronized void onSuccess(long latencyNanos) {
+    boolean utilized = inFlight * 2 >= getLimit();
+    inFlight--;
+    if (latencyNanos > latencyThresholdNanos) {
+      backOff();
+    } else if (utilized) {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  /** Releases the slot of a request that timed out or was rejected by an overloaded server. */
+  public synchronized void onDropped() {
+    inFlight--;
+    backOff();
+  }
+
+  /** Releases the slot of a request whose outcome says nothing about the server load. */
+  public synchronized void onIgnored() {
+    inFlight--;
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  private void backOff() {
+    limit = Math.max(minLimit, limit * backoffRatio);
+  }
+}
@@ -0,0 +1,18 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link TokenProvider} counterpart that hands out tokens without blocking the caller.
+ * Asynchronous requests get their token from providers implementing it, and {@link TokenProviders}
+ * adapts between both interfaces.
+ */
+public interface AsyncTokenProvider {
+  /**
+   * @return a stage completed with the token to authenticate the request with, or completed
+   *     exceptionally, preferably with an {@link com.incognia.common.exceptions.IncogniaException},
+   *     if there is none
+   */
+  CompletionStage<Token> getTokenAsync();
+}
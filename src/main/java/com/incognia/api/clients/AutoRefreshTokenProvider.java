@@ -2,45 +2,284 @@ package com.incognia.api.clients;
 
 import com.incognia.common.Token;
 import com.incognia.common.exceptions.IncogniaException;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.BackgroundTokenRefreshOptions;
+import com.incognia.common.utils.CustomOptions;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-public class AutoRefreshTokenProvider implements TokenProvider {
-  private static final int TOKEN_REFRESH_BEFORE_SECONDS = 10;
+/**
+ * Requests a token on first use and renews it shortly before it expires. At most one renewal is in
+ * flight at any time; while it runs, callers keep getting the current token if it is still valid,
+ * and only block on the renewal once the token has actually expired.
+ *
+ * <p>With {@link BackgroundTokenRefreshOptions}, tokens are also renewed in the background at a
+ * random point of their lifetime, so requests do not wait for renewals and many clients sharing the
+ * same credentials do not renew at the same time. Failed background renewals are retried while the
+ * current token is valid.
+ *
+ * <p>With a {@link TokenManager}, background renewals are scheduled on the manager instead of on a
+ * timer of their own, and are enabled with the default {@link BackgroundTokenRefreshOptions} if
+ * none are given.
+ *
+ * <p>With a {@link TokenStore}, tokens are shared with the other providers using the same store: a
+ * valid stored token is used instead of requesting a new one, and requested tokens are stored.
+ */
+public class AutoRefreshTokenProvider implements TokenProvider, AsyncTokenProvider {
+  private static final long TOKEN_REFRESH_BEFORE_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final AtomicReferenceFieldUpdater<AutoRefreshTokenProvider, Token> TOKEN =
+      AtomicReferenceFieldUpdater.newUpdater(AutoRefreshTokenProvider.class, Token.class, "token");
 
-  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicReference<CompletableFuture<Token>> pendingRefresh = new AtomicReference<>();
+  private final AtomicReference<HashedTimingWheel.Timeout> scheduledRefresh =
+      new AtomicReference<>();
+  private final String clientId;
   private final TokenRequester tokenRequester;
+  private final BackgroundTokenRefreshOptions backgroundRefreshOptions;
+  private final TokenStore tokenStore;
+  private final Executor tokenStoreExecutor;
+  private final TokenManager tokenManager;
   private volatile Token token;
+  private volatile Token rejectedToken;
+  private volatile boolean backgroundRefreshStopped;
 
   public AutoRefreshTokenProvider(
       String clientId, String clientSecret, NetworkingClient networkingClient) {
+    this(clientId, clientSecret, networkingClient, CustomOptions.builder().build());
+  }
+
+  /**
+   * @param options where the {@code backgroundTokenRefresh}, {@code tokenStore} and {@code
+   *     tokenManager} used by this provider are read from
+   */
+  public AutoRefreshTokenProvider(
+      String clientId,
+      String clientSecret,
+      NetworkingClient networkingClient,
+      CustomOptions options) {
+    BackgroundTokenRefreshOptions backgroundRefreshOptions = options.getBackgroundTokenRefresh();
+    if (backgroundRefreshOptions == null && options.getTokenManager() != null) {
+      backgroundRefreshOptions = BackgroundTokenRefreshOptions.builder().build();
+    }
+    if (backgroundRefreshOptions != null) {
+      validate(backgroundRefreshOptions);
+    }
+    this.clientId = clientId;
     this.tokenRequester = new TokenRequester(clientId, clientSecret, networkingClient);
+    this.backgroundRefreshOptions = backgroundRefreshOptions;
+    this.tokenStore = options.getTokenStore();
+    this.tokenStoreExecutor = TokenStores.executor(options.isUseVirtualThreads());
+    this.tokenManager = options.getTokenManager();
   }
 
   @Override
   public Token getToken() throws IncogniaException {
-    refreshTokenIfNeeded();
-    return token;
+    Token currentToken = token;
+    if (!needsRefresh(currentToken)) {
+      return currentToken;
+    }
+    CompletableFuture<Token> refresh = refresh();
+    if (currentToken != null && !currentToken.isExpired()) {
+      return currentToken;
+    }
+    return await(refresh);
+  }
+
+  /**
+   * Asynchronous version of {@link #getToken()}. The returned stage only waits for a renewal when
+   * there is no valid token.
+   */
+  @Override
+  public CompletionStage<Token> getTokenAsync() {
+    Token currentToken = token;
+    if (!needsRefresh(currentToken)) {
+      return CompletableFuture.completedFuture(currentToken);
+    }
+    CompletableFuture<Token> refresh = refresh();
+    if (currentToken != null && !currentToken.isExpired()) {
+      return CompletableFuture.completedFuture(currentToken);
+    }
+    // a dependent stage, so that callers cannot complete or cancel the shared refresh
+    return refresh.thenApply(Function.identity());
+  }
+
+  /**
+   * Stops handing out {@code token} and renews it, unless it was already replaced. Concurrent
+   * invalidations of the same token share a single renewal.
+   */
+  @Override
+  public CompletableFuture<Token> invalidate(Token token) {
+    rejectedToken = token;
+    TOKEN.compareAndSet(this, token, null);
+    Token currentToken = this.token;
+    if (currentToken != null) {
+      return CompletableFuture.completedFuture(currentToken);
+    }
+    return refresh();
+  }
+
+  /**
+   * Cancels the scheduled background renewal and schedules no further ones, so the provider no
+   * longer keeps a timer or token manager slot. Tokens are still renewed when requests need them.
+   */
+  public void stopBackgroundRefresh() {
+    backgroundRefreshStopped = true;
+    HashedTimingWheel.Timeout scheduled = scheduledRefresh.getAndSet(null);
+    if (scheduled != null) {
+      scheduled.cancel();
+    }
   }
 
   private boolean needsRefresh(Token token) {
-    return token == null
-        || Instant.now().until(token.getExpiresAt(), ChronoUnit.SECONDS)
-            <= TOKEN_REFRESH_BEFORE_SECONDS;
+    return token == null || token.remainingNanos() <= TOKEN_REFRESH_BEFORE_NANOS;
   }
 
-  private void refreshTokenIfNeeded() throws IncogniaException {
+  /** Returns the refresh in flight, starting one if there is none. */
+  private CompletableFuture<Token> refresh() {
+    while (true) {
+      CompletableFuture<Token> current = pendingRefresh.get();
+      if (current != null) {
+        return current;
+      }
+      CompletableFuture<Token> refresh = new CompletableFuture<>();
+      if (pendingRefresh.compareAndSet(null, refresh)) {
+        TokenStores.read(tokenStore, clientId, tokenStoreExecutor)
+            .thenAccept(storedToken -> requestToken(refresh, storedToken));
+        return refresh;
+      }
+    }
+  }
+
+  /** Completes {@code refresh} with {@code storedToken} if usable, or with a requested token. */
+  private void requestToken(CompletableFuture<Token> refresh, Token storedToken) {
+    if (isNewerThanCurrent(storedToken)) {
+      completeRefresh(refresh, storedToken, null);
+      return;
+    }
+    CompletableFuture<Token> request;
+    try {
+      request = tokenRequester.requestTokenAsync();
+    } catch (RuntimeException e) {
+      completeRefresh(refresh, null, e);
+      return;
+    }
+    request.whenComplete(
+        (newToken, throwable) -> {
+          if (throwable != null) {
+            completeRefresh(refresh, null, throwable);
+            return;
+          }
+          // stored before it is handed out, so providers asking the store afterwards find it
+          TokenStores.write(tokenStore, clientId, storedToken, newToken, tokenStoreExecutor)
+              .thenRun(() -> completeRefresh(refresh, newToken, null));
+        });
+  }
+
+  private void completeRefresh(
+      CompletableFuture<Token> refresh, Token newToken, Throwable throwable) {
+    if (throwable == null) {
+      token = newToken;
+    }
+    // cleared before completing so a failed refresh is not handed to later callers
+    pendingRefresh.set(null);
+    if (throwable == null) {
+      refresh.complete(newToken);
+    } else {
+      refresh.completeExceptionally(throwable);
+    }
+    if (backgroundRefreshOptions != null) {
+      scheduleBackgroundRefresh(throwable == null);
+    }
+  }
+
+  private boolean isNewerThanCurrent(Token storedToken) {
+    Token currentToken = token;
+    return !needsRefresh(storedToken)
+        && !storedToken.equals(rejectedToken)
+        && (currentToken == null
+            || storedToken.getExpiresAtNanos() - currentToken.getExpiresAtNanos() > 0);
+  }
+
+  private void scheduleBackgroundRefresh(boolean refreshed) {
     Token currentToken = token;
-    if (needsRefresh(currentToken)) {
-      lock.lock();
-      try {
-        if (needsRefresh(token)) {
-          token = tokenRequester.requestToken();
-        }
-      } finally {
-        lock.unlock();
+    if (backgroundRefreshStopped || currentToken == null || currentToken.isExpired()) {
+      return;
+    }
+    long delayMillis;
+    if (refreshed) {
+      long lifetimeMillis = TimeUnit.NANOSECONDS.toMillis(currentToken.remainingNanos());
+      double ratio =
+          backgroundRefreshOptions.getMinLifetimeRatio()
+              + ThreadLocalRandom.current().nextDouble()
+                  * (backgroundRefreshOptions.getMaxLifetimeRatio()
+                      - backgroundRefreshOptions.getMinLifetimeRatio());
+      delayMillis = (long) (lifetimeMillis * ratio);
+    } else {
+      delayMillis = backgroundRefreshOptions.getRetryDelayMillis();
+    }
+    // the task only holds a weak reference so that a discarded provider stops refreshing
+    WeakReference<AutoRefreshTokenProvider> provider = new WeakReference<>(this);
+    Supplier<CompletableFuture<Token>> renewal =
+        () -> {
+          AutoRefreshTokenProvider current = provider.get();
+          return current == null ? CompletableFuture.completedFuture(null) : current.refresh();
+        };
+    HashedTimingWheel.Timeout next;
+    try {
+      if (tokenManager != null) {
+        next = tokenManager.schedule(renewal, delayMillis);
+      } else {
+        ScheduledFuture<?> future =
+            InternalScheduler.get().schedule(renewal::get, delayMillis, TimeUnit.MILLISECONDS);
+        next = () -> future.cancel(false);
+      }
+    } catch (IllegalStateException | RejectedExecutionException e) {
+      // the token manager was shut down, so the token is renewed on requests instead
+      return;
+    }
+    HashedTimingWheel.Timeout previous = scheduledRefresh.getAndSet(next);
+    if (previous != null) {
+      previous.cancel();
+    }
+    if (backgroundRefreshStopped) {
+      // stopped while this renewal was being scheduled
+      stopBackgroundRefresh();
+    }
+  }
+
+  private static void validate(BackgroundTokenRefreshOptions options) {
+    double minRatio = options.getMinLifetimeRatio();
+    double maxRatio = options.getMaxLifetimeRatio();
+    if (minRatio <= 0 || maxRatio >= 1 || minRatio > maxRatio) {
+      throw new IllegalArgumentException(
+          "lifetime ratios must satisfy 0 < 'min lifetime ratio' <= 'max lifetime ratio' < 1");
+    }
+    Asserts.assertPositive(options.getRetryDelayMillis(), "retry delay millis");
+  }
+
+  private static Token await(CompletableFuture<Token> refresh) throws IncogniaException {
+    try {
+      return refresh.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IncogniaException) {
+        throw (IncogniaException) cause;
       }
+      throw new IncogniaException("failed refreshing token", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IncogniaException("interrupted while waiting for a token", e);
     }
   }
 }
@@ -0,0 +1,84 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.exceptions.BulkheadFullException;
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.BulkheadOptions;
+import com.incognia.common.utils.CompletableFutures;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Caps the number of concurrent calls to a single endpoint. Calls over the cap wait in a bounded
+ * FIFO queue, and calls that find the queue full are rejected with a {@link BulkheadFullException}.
+ * Permits are handed out as futures so the same bulkhead can be used from blocking and non-blocking
+ * paths.
+ */
+final class Bulkhead {
+  private final String name;
+  private final int maxConcurrentCalls;
+  private final int maxQueuedCalls;
+  private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+  private int activeCalls;
+
+  Bulkhead(String name, BulkheadOptions options) {
+    Asserts.assertPositive(options.getMaxConcurrentCalls(), "max concurrent calls");
+    if (options.getMaxQueuedCalls() < 0) {
+      throw new IllegalArgumentException("'max queued calls' cannot be negative");
+    }
+    this.name = name;
+    this.maxConcurrentCalls = options.getMaxConcurrentCalls();
+    this.maxQueuedCalls = options.getMaxQueuedCalls();
+  }
+
+  /**
+   * Requests a permit. The returned future completes once the permit is granted, which is
+   * immediately if there is a free slot, and fails with a {@link BulkheadFullException} if the
+   * queue is full. Every granted permit must be given back through {@link #release()}.
+   */
+  CompletableFuture<Void> acquire() {
+    synchronized (this) {
+      if (activeCalls < maxConcurrentCalls) {
+        activeCalls++;
+        return CompletableFuture.completedFuture(null);
+      }
+      if (waiters.size() < maxQueuedCalls) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        waiters.add(permit);
+        return permit;
+      }
+    }
+    return CompletableFutures.failedFuture(new BulkheadFullException(name));
+  }
+
+  /**
+   * Gives up a permit that is still waiting in the queue.
+   *
+   * @return false if the permit was already granted, in which case it must be released
+   */
+  boolean abandon(CompletableFuture<Void> permit) {
+    synchronized (this) {
+      if (!waiters.remove(permit)) {
+        return false;
+      }
+    }
+    permit.cancel(false);
+    return true;
+  }
+
+  /** Gives back a granted permit, handing it over to the oldest waiter if there is one. */
+  void release() {
+    CompletableFuture<Void> next;
+    synchronized (this) {
+      next = waiters.poll();
+      if (next == null) {
+        activeCalls--;
+        return;
+      }
+    }
+    next.complete(null);
+  }
+
+  String getName() {
+    return name;
+  }
+}
@@ -0,0 +1,45 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.BulkheadOptions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The {@link Bulkhead}s configured for each endpoint, looked up by request path. */
+public class Bulkheads {
+  private static final Bulkheads NONE = new Bulkheads(Collections.emptyMap());
+
+  private final Map<String, Bulkhead> bulkheadsByPath;
+
+  private Bulkheads(Map<String, Bulkhead> bulkheadsByPath) {
+    this.bulkheadsByPath = bulkheadsByPath;
+  }
+
+  public static Bulkheads none() {
+    return NONE;
+  }
+
+  /**
+   * @param optionsByPath the bulkhead options of each api endpoint, keyed by the paths its requests
+   *     are sent to; endpoints without options have no bulkhead
+   * @param tokenOptions the bulkhead options of the token endpoint, or null for none
+   */
+  public static Bulkheads from(
+      Map<String, BulkheadOptions> optionsByPath, BulkheadOptions tokenOptions) {
+    Map<String, Bulkhead> bulkheadsByPath = new HashMap<>();
+    optionsByPath.forEach((path, options) -> register(bulkheadsByPath, path, options));
+    register(bulkheadsByPath, TokenRequester.TOKEN_PATH, tokenOptions);
+    return bulkheadsByPath.isEmpty() ? NONE : new Bulkheads(bulkheadsByPath);
+  }
+
+  Bulkhead forPath(String path) {
+    return bulkheadsByPath.get(path);
+  }
+
+  private static void register(
+      Map<String, Bulkhead> bulkheadsByPath, String path, BulkheadOptions options) {
+    if (options != null) {
+      bulkheadsByPath.put(path, new Bulkhead(path, options));
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.incognia.api.clients;
+
+/**
+ * State of a call sent by {@link TokenAwareNetworkingClient}: the latency of the previous call,
+ * reported to the api in a header, and a clock measuring how long this call takes once it is let
+ * through to the network, leaving out the time it waited for a bulkhead permit.
+ */
+final class CallContext {
+  private final long reportedLatencyMillis;
+  private volatile long startNanos = System.nanoTime();
+
+  /**
+   * @param reportedLatencyMillis the latency to report, or a negative value to report none
+   */
+  CallContext(long reportedLatencyMillis) {
+    this.reportedLatencyMillis = reportedLatencyMillis;
+  }
+
+  long getReportedLatencyMillis() {
+    return reportedLatencyMillis;
+  }
+
+  /** Restarts the clock, once the call got its permit. */
+  void start() {
+    startNanos = System.nanoTime();
+  }
+
+  long elapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+}
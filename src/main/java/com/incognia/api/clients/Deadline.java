@@ -0,0 +1,54 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.RequestOptions;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a single call must be done, measured with {@link System#nanoTime()}. The
+ * budget covers everything the call does, including waiting for a bulkhead permit and for the
+ * response, and it is shared by every attempt of a hedged call.
+ */
+public final class Deadline {
+  private static final Deadline NONE = new Deadline(false, 0);
+
+  private final boolean set;
+  private final long deadlineNanos;
+
+  private Deadline(boolean set, long deadlineNanos) {
+    this.set = set;
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @return a deadline that never expires, leaving calls bound only by the client timeout
+   */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  /**
+   * @param options the options of the call, whose timeout starts counting now
+   * @return the deadline of the call, or {@link #none()} if no timeout was given
+   */
+  public static Deadline from(RequestOptions options) {
+    Asserts.assertNotNull(options, "request options");
+    Long timeoutMillis = options.getTimeoutMillis();
+    if (timeoutMillis == null) {
+      return NONE;
+    }
+    Asserts.assertPositive(timeoutMillis, "timeout millis");
+    return new Deadline(true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+  }
+
+  boolean isSet() {
+    return set;
+  }
+
+  /**
+   * @return the time left until the deadline, which is not positive once it has passed
+   */
+  long remainingNanos() {
+    return deadlineNanos - System.nanoTime();
+  }
+}
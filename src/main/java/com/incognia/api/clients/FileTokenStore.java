@@ -0,0 +1,138 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.Asserts;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link TokenStore} that keeps each token in a file of the given directory, so it can be shared by
+ * every process that can access the directory, such as the containers of a pod sharing a volume.
+ * Updates are serialized with a lock file and written atomically, so readers never see a partially
+ * written token.
+ *
+ * <p>Tokens are stored in plaintext. Token files are created readable only by their owner where the
+ * file system supports it, but the directory itself should not be accessible by other users, and
+ * should not be on storage that is backed up or shared beyond the processes using it.
+ */
+public class FileTokenStore implements TokenStore {
+  private static final String ACCESS_TOKEN = "access_token";
+  private static final String TOKEN_TYPE = "token_type";
+  private static final String EXPIRES_AT = "expires_at";
+  // FileLock is held per process, so updates from the same process are serialized here as well
+  private static final ConcurrentMap<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+  private final Path directory;
+
+  public FileTokenStore(Path directory) {
+    Asserts.assertNotNull(directory, "directory");
+    this.directory = directory.toAbsolutePath().normalize();
+  }
+
+  @Override
+  public Token get(String key) throws IncogniaException {
+    try {
+      return read(tokenFile(key));
+    } catch (IOException e) {
+      throw new IncogniaException("failed reading token store", e);
+    }
+  }
+
+  @Override
+  public boolean compareAndSet(String key, Token expected, Token token) throws IncogniaException {
+    Asserts.assertNotNull(token, "token");
+    Path tokenFile = tokenFile(key);
+    Path lockFile = tokenFile.resolveSibling(tokenFile.getFileName() + ".lock");
+    synchronized (PROCESS_LOCKS.computeIfAbsent(lockFile, path -> new Object())) {
+      try {
+        Files.createDirectories(directory);
+        try (FileChannel channel =
+                FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock ignored = channel.lock()) {
+          if (!Objects.equals(read(tokenFile), expected)) {
+            return false;
+          }
+          write(tokenFile, token);
+          return true;
+        }
+      } catch (IOException e) {
+        throw new IncogniaException("failed writing token store", e);
+      }
+    }
+  }
+
+  private Path tokenFile(String key) {
+    Asserts.assertNotEmpty(key, "key");
+    return directory.resolve("incognia-token-" + sha256(key) + ".properties");
+  }
+
+  private static Token read(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream input = Files.newInputStream(file)) {
+      properties.load(input);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    String accessToken = properties.getProperty(ACCESS_TOKEN);
+    String tokenType = properties.getProperty(TOKEN_TYPE);
+    String expiresAt = properties.getProperty(EXPIRES_AT);
+    if (accessToken == null || tokenType == null || expiresAt == null) {
+      return null;
+    }
+    try {
+      return new Token(accessToken, tokenType, Instant.parse(expiresAt));
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  private void write(Path file, Token token) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(ACCESS_TOKEN, token.getAccessToken());
+    properties.setProperty(TOKEN_TYPE, token.getTokenType());
+    properties.setProperty(EXPIRES_AT, token.getExpiresAt().toString());
+    // temporary files are created readable only by their owner on POSIX file systems
+    Path temporaryFile = Files.createTempFile(directory, "incognia-token-", ".tmp");
+    try {
+      try (OutputStream output = Files.newOutputStream(temporaryFile)) {
+        properties.store(output, null);
+      }
+      Files.move(
+          temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  private static String sha256(String value) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,156 @@
+package com.incognia.api.clients;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer that keeps its tasks in a circular array of buckets, one per tick, so scheduling and
+ * cancelling are O(1) regardless of how many tasks are pending. Tasks run on the given executor, at
+ * most one tick late; tasks further in the future than one turn of the wheel wait for as many turns
+ * as needed in their bucket.
+ *
+ * <p>A single thread advances the wheel. Scheduled tasks are handed to it through a lock-free queue
+ * and only that thread touches the buckets.
+ */
+final class HashedTimingWheel {
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final long tickNanos;
+  private final List<WheelTimeout>[] buckets;
+  private final int mask;
+  private final Executor executor;
+  private final Queue<WheelTimeout> scheduled = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean running = new AtomicBoolean(true);
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final long startNanos;
+  private final Thread worker;
+  private long tick;
+
+  @SuppressWarnings("unchecked")
+  HashedTimingWheel(long tickMillis, int wheelSize, Executor executor) {
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) {
+      size <<= 1;
+    }
+    this.buckets = new List[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new ArrayList<>();
+    }
+    this.mask = size - 1;
+    this.executor = executor;
+    this.startNanos = System.nanoTime();
+    this.worker = new Thread(this::run, "incognia-timing-wheel-" + THREAD_COUNT.incrementAndGet());
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Runs {@code task} on the executor after {@code delayMillis}.
+   *
+   * @return a handle to cancel the task
+   */
+  Timeout schedule(Runnable task, long delayMillis) {
+    if (!running.get()) {
+      throw new IllegalStateException("timing wheel was stopped");
+    }
+    long deadlineNanos =
+        System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+    WheelTimeout timeout = new WheelTimeout(task, deadlineNanos);
+    pendingCount.incrementAndGet();
+    scheduled.add(timeout);
+    return timeout;
+  }
+
+  int getPendingCount() {
+    return pendingCount.get();
+  }
+
+  void stop() {
+    running.set(false);
+    worker.interrupt();
+  }
+
+  private void run() {
+    while (running.get()) {
+      long tickDeadlineNanos = (tick + 1) * tickNanos;
+      long sleepNanos = tickDeadlineNanos - (System.nanoTime() - startNanos);
+      if (sleepNanos > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (InterruptedException e) {
+          continue;
+        }
+      }
+      transferScheduled();
+      expire(buckets[(int) (tick & mask)]);
+      tick++;
+    }
+  }
+
+  private void transferScheduled() {
+    WheelTimeout timeout;
+    while ((timeout = scheduled.poll()) != null) {
+      if (timeout.cancelled.get()) {
+        continue;
+      }
+      long expirationTick = Math.max(timeout.deadlineNanos / tickNanos, tick);
+      timeout.remainingRounds = (expirationTick - tick) / buckets.length;
+      buckets[(int) (expirationTick & mask)].add(timeout);
+    }
+  }
+
+  private void expire(List<WheelTimeout> bucket) {
+    int kept = 0;
+    for (WheelTimeout timeout : bucket) {
+      if (timeout.cancelled.get()) {
+        continue;
+      }
+      if (timeout.remainingRounds > 0) {
+        timeout.remainingRounds--;
+        bucket.set(kept++, timeout);
+      } else if (timeout.fired.compareAndSet(false, true)) {
+        pendingCount.decrementAndGet();
+        executor.execute(timeout.task);
+      }
+    }
+    bucket.subList(kept, bucket.size()).clear();
+  }
+
+  /** Handle to a scheduled task. */
+  interface Timeout {
+    /**
+     * @return false if the task already ran or was cancelled
+     */
+    boolean cancel();
+  }
+
+  private final class WheelTimeout implements Timeout {
+    private final Runnable task;
+    private final long deadlineNanos;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean fired = new AtomicBoolean();
+    private long remainingRounds;
+
+    private WheelTimeout(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (fired.compareAndSet(false, true)) {
+        cancelled.set(true);
+        pendingCount.decrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.CompletableFutures;
+import com.incognia.common.utils.HedgingOptions;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, identical request when the first one has not completed after a given percentile
+ * of the recently observed latencies, and keeps whichever succeeds first. The other one is
+ * cancelled. Until enough samples have been observed, requests are not hedged.
+ *
+ * <p>Hedged requests may be registered twice by the api, so this should only be used where the
+ * extra traffic is acceptable.
+ */
+public class HedgingPolicy {
+  private final LatencyTracker latencyTracker;
+  private final long minDelayMillis;
+
+  public HedgingPolicy(HedgingOptions options) {
+    Asserts.assertNotNull(options, "hedging options");
+    Asserts.assertPositive(options.getSampleSize(), "sample size");
+    Asserts.assertPositive(options.getMinSamples(), "min samples");
+    if (options.getPercentile() <= 0 || options.getPercentile() > 1) {
+      throw new IllegalArgumentException("'percentile' must be between 0 and 1");
+    }
+    if (options.getMinSamples() > options.getSampleSize()) {
+      throw new IllegalArgumentException("'min samples' cannot be greater than 'sample size'");
+    }
+    this.latencyTracker =
+        new LatencyTracker(
+            options.getSampleSize(), options.getPercentile(), options.getMinSamples());
+    this.minDelayMillis = options.getMinDelayMillis();
+  }
+
+  /**
+   * Runs {@code attempt} and, if it is still running after the hedge delay, runs it once more.
+   *
+   * @param attempt starts a new request every time it is called
+   * @return a future completed with the first successful response, or with the last failure if
+   *     every attempt failed
+   */
+  public <U> CompletableFuture<U> execute(Supplier<CompletableFuture<U>> attempt) {
+    long start = System.nanoTime();
+    CompletableFuture<U> primary = attempt.get();
+    CompletableFuture<U> result = new CompletableFuture<>();
+    // failures, timeouts and a primary cancelled because the hedge won are recorded with the time
+    // they took, a lower bound of the latency, so slow requests are not left out of the samples. A
+    // primary cancelled by the caller says nothing about the latency and is not recorded.
+    primary.whenComplete(
+        (value, throwable) -> {
+          if (!primary.isCancelled() || (result.isDone() && !result.isCompletedExceptionally())) {
+            latencyTracker.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+          }
+        });
+    long hedgeDelayMillis = latencyTracker.getPercentile();
+    if (hedgeDelayMillis < 0 || primary.isDone()) {
+      return primary;
+    }
+
+    List<CompletableFuture<U>> attempts = new CopyOnWriteArrayList<>();
+    AtomicInteger remaining = new AtomicInteger(1);
+    race(primary, result, attempts, remaining);
+    ScheduledFuture<?> hedge =
+        InternalScheduler.get()
+            .schedule(
+                () -> {
+                  if (result.isDone()) {
+                    return;
+                  }
+                  remaining.incrementAndGet();
+                  CompletableFuture<U> secondary;
+                  try {
+                    secondary = attempt.get();
+                  } catch (RuntimeException e) {
+                    secondary = CompletableFutures.failedFuture(e);
+                  }
+                  race(secondary, result, attempts, remaining);
+                },
+                Math.max(minDelayMillis, hedgeDelayMillis),
+                TimeUnit.MILLISECONDS);
+    result.whenComplete(
+        (value, throwable) -> {
+          hedge.cancel(false);
+          for (CompletableFuture<U> future : attempts) {
+            future.cancel(false);
+          }
+        });
+    return result;
+  }
+
+  private static <U> void race(
+      CompletableFuture<U> future,
+      CompletableFuture<U> result,
+      List<CompletableFuture<U>> attempts,
+      AtomicInteger remaining) {
+    attempts.add(future);
+    future.whenComplete(
+        (value, throwable) -> {
+          if (throwable == null) {
+            result.complete(value);
+          } else if (remaining.decrementAndGet() == 0) {
+            result.completeExceptionally(throwable);
+          }
+        });
+    if (result.isDone()) {
+      future.cancel(false);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.BulkheadOptions;
+import com.incognia.common.utils.CustomOptions;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.experimental.UtilityClass;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+@UtilityClass
+public class HttpClientFactory {
+  private static final String DISPATCHER_THREAD_NAME = "incognia-dispatcher";
+  private static final String TOKEN_DISPATCHER_THREAD_NAME = "incognia-token-dispatcher";
+  private static final int TOKEN_MAX_REQUESTS = 4;
+  // weak keys, so a token client is released with the http client it was derived from
+  private static final Map<OkHttpClient, OkHttpClient> TOKEN_CLIENTS = new WeakHashMap<>();
+
+  /**
+   * Creates the {@link OkHttpClient} used to reach the Incognia API, configured from the given
+   * options.
+   *
+   * @param options the options used to configure timeouts, connection pooling and threading.
+   * @return the http client
+   */
+  public static OkHttpClient create(CustomOptions options) {
+    Asserts.assertNotNull(options, "custom options");
+    Asserts.assertPositive(options.getMaxRequests(), "max requests");
+    Asserts.assertPositive(options.getMaxRequestsPerHost(), "max requests per host");
+    OkHttpClient.Builder builder =
+        new OkHttpClient.Builder()
+            .callTimeout(options.getTimeoutMillis(), TimeUnit.MILLISECONDS)
+            .connectionPool(
+                new ConnectionPool(
+                    options.getMaxConnections(), options.getKeepAliveSeconds(), TimeUnit.SECONDS));
+    // bulkheads only isolate endpoints if the dispatcher admits every call they let through, or a
+    // burst on one endpoint would queue the others in the dispatcher again
+    int bulkheadCalls = bulkheadConcurrentCalls(options);
+    builder.dispatcher(
+        createDispatcher(
+            options.getDispatcherExecutor(),
+            options.isUseVirtualThreads(),
+            DISPATCHER_THREAD_NAME,
+            Math.max(options.getMaxRequests(), bulkheadCalls),
+            Math.max(options.getMaxRequestsPerHost(), bulkheadCalls)));
+    return builder.build();
+  }
+
+  /** Returns how many calls the bulkheads of the api endpoints let through at once. */
+  private static int bulkheadConcurrentCalls(CustomOptions options) {
+    int calls = 0;
+    for (BulkheadOptions bulkhead :
+        Arrays.asList(
+            options.getSignupsBulkhead(),
+            options.getTransactionsBulkhead(),
+            options.getFeedbacksBulkhead())) {
+      if (bulkhead != null) {
+        calls += bulkhead.getMaxConcurrentCalls();
+      }
+    }
+    return calls;
+  }
+
+  /**
+   * Returns the {@link OkHttpClient} used to request tokens. It is derived from {@code httpClient},
+   * so it keeps its connections, proxy, interceptors, TLS and DNS settings, but has a dispatcher
+   * and a call timeout of its own, so token requests are never queued behind the requests that are
+   * waiting for a token. The dispatcher does not use {@code dispatcherExecutor}, whose threads may
+   * all be taken by those requests, and runs on threads of its own instead.
+   *
+   * <p>The token client is created once per {@code httpClient}: instances sharing an http client
+   * also share its token client, and with it a single token dispatcher.
+   *
+   * @param httpClient the http client the token client is derived from
+   * @param options the options used to configure the token timeout and threading.
+   * @return the http client for token requests
+   */
+  public static OkHttpClient createForTokens(OkHttpClient httpClient, CustomOptions options) {
+    Asserts.assertNotNull(httpClient, "http client");
+    Asserts.assertNotNull(options, "custom options");
+    Asserts.assertPositive(options.getTokenTimeoutMillis(), "token timeout millis");
+    OkHttpClient tokenClient;
+    synchronized (TOKEN_CLIENTS) {
+      tokenClient = TOKEN_CLIENTS.get(httpClient);
+      if (tokenClient == null) {
+        OkHttpClient.Builder builder =
+            httpClient
+                .newBuilder()
+                .callTimeout(options.getTokenTimeoutMillis(), TimeUnit.MILLISECONDS);
+        builder.dispatcher(
+            createDispatcher(
+                null,
+                options.isUseVirtualThreads(),
+                TOKEN_DISPATCHER_THREAD_NAME,
+                TOKEN_MAX_REQUESTS,
+                TOKEN_MAX_REQUESTS));
+        tokenClient = builder.build();
+        TOKEN_CLIENTS.put(httpClient, tokenClient);
+      }
+    }
+    if (tokenClient.callTimeoutMillis() != options.getTokenTimeoutMillis()) {
+      // same dispatcher and connections, only the timeout differs
+      return tokenClient
+          .newBuilder()
+          .callTimeout(options.getTokenTimeoutMillis(), TimeUnit.MILLISECONDS)
+          .build();
+    }
+    return tokenClient;
+  }
+
+  private static Dispatcher createDispatcher(
+      ExecutorService executor,
+      boolean useVirtualThreads,
+      String threadName,
+      int maxRequests,
+      int maxRequestsPerHost) {
+    Dispatcher dispatcher;
+    if (executor != null) {
+      dispatcher = new Dispatcher(executor);
+    } else if (useVirtualThreads && VirtualThreads.isSupported()) {
+      dispatcher = new Dispatcher(VirtualThreads.newThreadPerTaskExecutor(threadName));
+    } else {
+      dispatcher = new Dispatcher();
+    }
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    return dispatcher;
+  }
+}
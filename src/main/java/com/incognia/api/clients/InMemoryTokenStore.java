@@ -0,0 +1,25 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import com.incognia.common.utils.Asserts;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** {@link TokenStore} that shares tokens between the providers of a single process. */
+public class InMemoryTokenStore implements TokenStore {
+  private final ConcurrentMap<String, Token> tokens = new ConcurrentHashMap<>();
+
+  @Override
+  public Token get(String key) {
+    return tokens.get(key);
+  }
+
+  @Override
+  public boolean compareAndSet(String key, Token expected, Token token) {
+    Asserts.assertNotNull(token, "token");
+    if (expected == null) {
+      return tokens.putIfAbsent(key, token) == null;
+    }
+    return tokens.replace(key, expected, token);
+  }
+}
@@ -0,0 +1,34 @@
+package com.incognia.api.clients;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single daemon timer thread shared by every instance, used for delayed work such as hedged
+ * requests. Tasks run on it must be short and must not block.
+ */
+final class InternalScheduler {
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  private static final ScheduledExecutorService EXECUTOR = createExecutor();
+
+  private InternalScheduler() {}
+
+  static ScheduledExecutorService get() {
+    return EXECUTOR;
+  }
+
+  private static ScheduledExecutorService createExecutor() {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "incognia-scheduler-" + THREAD_COUNT.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+}
@@ -0,0 +1,52 @@
+package com.incognia.api.clients;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A {@link JsonCodec} backed by a Jackson {@link ObjectMapper}, used as is. */
+public class JacksonJsonCodec implements JsonCodec {
+  private final ObjectMapper objectMapper;
+  // writers and readers are resolved once per type instead of on every call
+  private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+  public JacksonJsonCodec(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public void write(Object value, OutputStream out) throws IOException {
+    writerFor(value.getClass()).writeValue(out, value);
+  }
+
+  @Override
+  public <T> T read(InputStream in, Class<T> type) throws IOException {
+    return readerFor(type).readValue(in);
+  }
+
+  private ObjectWriter writerFor(Class<?> type) {
+    // looked up before computeIfAbsent, which locks on Java 8 even when the key is present
+    ObjectWriter writer = writers.get(type);
+    if (writer == null) {
+      writer =
+          writers.computeIfAbsent(
+              type,
+              t -> objectMapper.writerFor(t).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+    return writer;
+  }
+
+  private ObjectReader readerFor(Class<?> type) {
+    ObjectReader reader = readers.get(type);
+    if (reader == null) {
+      reader = readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+    return reader;
+  }
+}
@@ -0,0 +1,45 @@
+package com.incognia.api.clients;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Registers a Jackson module that replaces reflective getter, setter and constructor calls with
+ * generated accessors. Blackbird is preferred, and Afterburner is used on older setups; neither is
+ * a dependency of this library, so one of them has to be added by the application.
+ */
+@UtilityClass
+public class JsonAccessorModules {
+  private static final String[] MODULE_CLASS_NAMES = {
+    "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+    "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+  };
+
+  /**
+   * Returns a copy of {@code objectMapper} with the first accessor module found on the classpath.
+   *
+   * @param objectMapper the mapper to copy
+   * @return the mapper with generated accessors
+   * @throws IllegalStateException if neither module is on the classpath
+   */
+  public static ObjectMapper withGeneratedAccessors(ObjectMapper objectMapper) {
+    for (String className : MODULE_CLASS_NAMES) {
+      Class<?> moduleClass;
+      try {
+        moduleClass = Class.forName(className);
+      } catch (ClassNotFoundException e) {
+        continue;
+      }
+      try {
+        return objectMapper
+            .copy()
+            .registerModule((Module) moduleClass.getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("failed creating " + className, e);
+      }
+    }
+    throw new IllegalStateException(
+        "generated json accessors require jackson-module-blackbird or jackson-module-afterburner on the classpath");
+  }
+}
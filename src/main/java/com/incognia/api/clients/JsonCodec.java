@@ -0,0 +1,38 @@
+package com.incognia.api.clients;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes request bodies and reads responses as JSON, so the JSON library used to talk to the api
+ * can be replaced. {@link JacksonJsonCodec} is the default.
+ *
+ * <p>Codecs other than the ones created by {@code com.incognia.api.JsonCodecs} are handed request
+ * bodies already in the shape of the api's wire format: {@code PostSignupRequestBody}, {@code
+ * PostTransactionRequestBody} and {@code PostFeedbackRequestBody}. They have to write their
+ * properties, and those of the models they hold, in snake case, leaving out null values, and the
+ * addresses, payment methods and custom properties when they are empty. Responses are read as
+ * {@code SignupAssessment}, {@code TransactionAssessment} and {@link TokenResponse}, with the same
+ * naming, ignoring unknown properties. Implementations are shared between threads.
+ */
+public interface JsonCodec {
+  /**
+   * Writes {@code value} to {@code out}, without closing it.
+   *
+   * @param value the request body
+   * @param out the stream the request is sent through
+   * @throws IOException if the body cannot be written; failures other than those of {@code out} are
+   *     reported as serialization errors, as are unchecked exceptions
+   */
+  void write(Object value, OutputStream out) throws IOException;
+
+  /**
+   * Reads a {@code type} from {@code in}. Error responses are read as a {@link java.util.Map}.
+   *
+   * @param in the response body
+   * @param type the type to read
+   * @return the value read
+   */
+  <T> T read(InputStream in, Class<T> type) throws IOException;
+}
@@ -0,0 +1,104 @@
+package com.incognia.api.clients;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A request body serialized straight into the connection when the request is sent, instead of into
+ * an intermediate byte array. Its length is unknown upfront, so it is sent chunked over HTTP/1.1.
+ * It is serialized again if OkHttp has to resend the request.
+ */
+final class JsonRequestBody extends RequestBody {
+  private final JsonCodec jsonCodec;
+  private final MediaType contentType;
+  private final Object body;
+
+  JsonRequestBody(JsonCodec jsonCodec, MediaType contentType, Object body) {
+    this.jsonCodec = jsonCodec;
+    this.contentType = contentType;
+    this.body = body;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public void writeTo(@NotNull BufferedSink sink) throws IOException {
+    SinkOutputStream out = new SinkOutputStream(sink.outputStream());
+    try {
+      jsonCodec.write(body, out);
+    } catch (IOException e) {
+      // failures of the connection itself are left as they are, to be reported as network errors
+      if (out.failed) {
+        throw e;
+      }
+      throw new WriteException(e);
+    } catch (RuntimeException e) {
+      // thrown from a dispatcher thread, it would kill the thread instead of failing the call
+      throw new WriteException(e);
+    }
+  }
+
+  /** Signals that the codec failed writing the body, so it is not taken for a network error. */
+  static final class WriteException extends IOException {
+    private WriteException(Throwable cause) {
+      super("failed writing request body", cause);
+    }
+  }
+
+  /** Tells the connection's failures apart from the codec's own. */
+  private static final class SinkOutputStream extends OutputStream {
+    private final OutputStream out;
+    private boolean failed;
+
+    private SinkOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      try {
+        out.write(b);
+      } catch (IOException e) {
+        failed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public void write(@NotNull byte[] b, int off, int len) throws IOException {
+      try {
+        out.write(b, off, len);
+      } catch (IOException e) {
+        failed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        failed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.close();
+      } catch (IOException e) {
+        failed = true;
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.incognia.api.clients;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples in a ring buffer and answers percentile queries over them.
+ * The percentile is cached and only recomputed after a tenth of the window has been replaced, so
+ * queries on the request path are cheap.
+ */
+final class LatencyTracker {
+  private final long[] samples;
+  private final double percentile;
+  private final int minSamples;
+  private final int recomputeInterval;
+  private int count;
+  private int next;
+  private int recordedSinceComputation;
+  private long cachedPercentile = -1;
+
+  LatencyTracker(int sampleSize, double percentile, int minSamples) {
+    this.samples = new long[sampleSize];
+    this.percentile = percentile;
+    this.minSamples = minSamples;
+    this.recomputeInterval = Math.max(1, sampleSize / 10);
+  }
+
+  synchronized void record(long latencyMillis) {
+    samples[next] = latencyMillis;
+    next = (next + 1) % samples.length;
+    count = Math.min(count + 1, samples.length);
+    recordedSinceComputation++;
+  }
+
+  /**
+   * @return the configured percentile of the recorded samples, or -1 if there are not enough
+   *     samples yet
+   */
+  synchronized long getPercentile() {
+    if (count < minSamples) {
+      return -1;
+    }
+    if (cachedPercentile < 0 || recordedSinceComputation >= recomputeInterval) {
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * count) - 1;
+      cachedPercentile = sorted[Math.max(0, Math.min(count - 1, index))];
+      recordedSinceComputation = 0;
+    }
+    return cachedPercentile;
+  }
+}
@@ -5,17 +5,19 @@ import com.incognia.common.exceptions.IncogniaException;
 import com.incognia.common.exceptions.TokenExpiredException;
 import com.incognia.common.exceptions.TokenNotFoundException;
 import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.CompletableFutures;
 import com.incognia.common.utils.CustomOptions;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.locks.ReentrantLock;
-import okhttp3.ConnectionPool;
-import okhttp3.OkHttpClient;
 
-public class ManualRefreshTokenProvider implements TokenProvider {
+public class ManualRefreshTokenProvider implements TokenProvider, AsyncTokenProvider {
   private static final String API_URL = "https://api.incognia.com";
 
   private final ReentrantLock lock = new ReentrantLock();
+  private final String clientId;
   private final TokenRequester tokenRequester;
+  private final TokenStore tokenStore;
   private volatile Token token;
 
   public ManualRefreshTokenProvider(String clientId, String clientSecret) {
@@ -23,50 +25,95 @@ public class ManualRefreshTokenProvider implements TokenProvider {
   }
 
   public ManualRefreshTokenProvider(String clientId, String clientSecret, CustomOptions options) {
-    this(clientId, clientSecret, createNetworkingClient(options));
+    this(clientId, clientSecret, createNetworkingClient(options), options.getTokenStore());
   }
 
   ManualRefreshTokenProvider(
       String clientId, String clientSecret, NetworkingClient networkingClient) {
+    this(clientId, clientSecret, networkingClient, null);
+  }
+
+  ManualRefreshTokenProvider(
+      String clientId,
+      String clientSecret,
+      NetworkingClient networkingClient,
+      TokenStore tokenStore) {
     Asserts.assertNotEmpty(clientId, "client id");
     Asserts.assertNotEmpty(clientSecret, "client secret");
     Asserts.assertNotNull(networkingClient, "networking client");
+    this.clientId = clientId;
     this.tokenRequester = new TokenRequester(clientId, clientSecret, networkingClient);
+    this.tokenStore = tokenStore;
   }
 
+  /**
+   * Returns the last refreshed token or, if it is missing or expired and a {@link TokenStore} is
+   * configured, a valid token stored by another provider.
+   */
   @Override
   public Token getToken() throws IncogniaException {
     Token currentToken = token;
-    if (currentToken == null) {
-      throw new TokenNotFoundException();
+    if (currentToken == null || currentToken.isExpired()) {
+      return validToken(TokenStores.read(tokenStore, clientId).join());
     }
+    return currentToken;
+  }
 
-    if (currentToken.isExpired()) {
-      throw new TokenExpiredException();
+  /**
+   * Asynchronous version of {@link #getToken()}. The stage is already completed unless the token
+   * store has to be read.
+   */
+  @Override
+  public CompletionStage<Token> getTokenAsync() {
+    Token currentToken = token;
+    if (currentToken != null && !currentToken.isExpired()) {
+      return CompletableFuture.completedFuture(currentToken);
     }
-
-    return currentToken;
+    return TokenStores.read(tokenStore, clientId)
+        .thenCompose(
+            storedToken -> {
+              try {
+                return CompletableFuture.completedFuture(validToken(storedToken));
+              } catch (IncogniaException e) {
+                return CompletableFutures.failedFuture(e);
+              }
+            });
   }
 
   public Token refresh() throws IncogniaException {
     lock.lock();
     try {
+      // read while the token is requested, as it is only needed to store the new one
+      CompletableFuture<Token> storedToken = TokenStores.read(tokenStore, clientId);
       token = tokenRequester.requestToken();
+      TokenStores.write(tokenStore, clientId, storedToken.join(), token).join();
       return token;
     } finally {
       lock.unlock();
     }
   }
 
+  /** Adopts {@code storedToken} if it is valid and returns the token to use. */
+  private Token validToken(Token storedToken) throws IncogniaException {
+    Token currentToken = token;
+    if ((currentToken == null || currentToken.isExpired())
+        && storedToken != null
+        && !storedToken.isExpired()) {
+      token = storedToken;
+      currentToken = storedToken;
+    }
+    if (currentToken == null) {
+      throw new TokenNotFoundException();
+    }
+
+    if (currentToken.isExpired()) {
+      throw new TokenExpiredException();
+    }
+
+    return currentToken;
+  }
+
   private static NetworkingClient createNetworkingClient(CustomOptions options) {
-    Asserts.assertNotNull(options, "custom options");
-    OkHttpClient httpClient =
-        new OkHttpClient.Builder()
-            .callTimeout(options.getTimeoutMillis(), TimeUnit.MILLISECONDS)
-            .connectionPool(
-                new ConnectionPool(
-                    options.getMaxConnections(), options.getKeepAliveSeconds(), TimeUnit.SECONDS))
-            .build();
-    return new NetworkingClient(httpClient, API_URL);
+    return new NetworkingClient(HttpClientFactory.create(options), API_URL);
   }
 }
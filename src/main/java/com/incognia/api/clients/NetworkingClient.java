@@ -1,15 +1,21 @@
 package com.incognia.api.clients;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.MapType;
+import com.incognia.common.exceptions.BulkheadFullException;
 import com.incognia.common.exceptions.IncogniaAPIException;
 import com.incognia.common.exceptions.IncogniaException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
@@ -23,19 +29,33 @@ import org.jetbrains.annotations.NotNull;
 
 public class NetworkingClient {
   private static final MediaType MEDIA_TYPE_JSON = MediaType.get("application/json; charset=utf-8");
+  private static final String LATENCY_HEADER = "X-Incognia-Latency";
   private static final MediaType MEDIA_TYPE_FORM_URLENCODED =
       MediaType.get("application/x-www-form-urlencoded; charset=utf-8");
+  private static final JsonCodec DEFAULT_JSON_CODEC =
+      new JacksonJsonCodec(ObjectMapperFactory.OBJECT_MAPPER);
   private final OkHttpClient httpClient;
-  private final ObjectMapper objectMapper;
+  private final JsonCodec jsonCodec;
   private final HttpUrl baseUrl;
-  private final MapType mapType;
+  private final Bulkheads bulkheads;
 
   public NetworkingClient(OkHttpClient httpClient, String baseUrl) {
+    this(httpClient, baseUrl, Bulkheads.none());
+  }
+
+  public NetworkingClient(OkHttpClient httpClient, String baseUrl, Bulkheads bulkheads) {
+    this(httpClient, baseUrl, bulkheads, DEFAULT_JSON_CODEC);
+  }
+
+  /**
+   * @param jsonCodec the codec request bodies are written and responses are read with
+   */
+  public NetworkingClient(
+      OkHttpClient httpClient, String baseUrl, Bulkheads bulkheads, JsonCodec jsonCodec) {
     this.httpClient = httpClient;
-    this.objectMapper = ObjectMapperFactory.OBJECT_MAPPER;
+    this.bulkheads = bulkheads;
+    this.jsonCodec = jsonCodec;
     this.baseUrl = HttpUrl.parse(baseUrl);
-    this.mapType =
-        objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, Object.class);
   }
 
   public <T, U> U doPost(String path, T body, Class<U> responseType, Map<String, String> headers)
@@ -50,86 +70,417 @@ public class NetworkingClient {
       Map<String, String> headers,
       Map<String, String> queryParameters)
       throws IncogniaException {
-    Request request = buildPostRequest(path, body, headers, queryParameters);
-    try (Response response = httpClient.newCall(request).execute()) {
-      return parseResponse(response, responseType);
-    } catch (InterruptedIOException e) {
-      throw new IncogniaException("network call timeout", e);
-    } catch (IOException e) {
-      throw new IncogniaException("network call failed", e);
-    }
+    return doPost(path, body, responseType, Headers.of(headers), queryParameters, Deadline.none());
+  }
+
+  public <T, U> U doPost(
+      String path,
+      T body,
+      Class<U> responseType,
+      Headers headers,
+      Map<String, String> queryParameters,
+      Deadline deadline)
+      throws IncogniaException {
+    return doPost(path, body, responseType, headers, queryParameters, deadline, null);
+  }
+
+  /**
+   * @param context the latency to report and the clock to start once the call gets its bulkhead
+   *     permit, or null
+   */
+  <T, U> U doPost(
+      String path,
+      T body,
+      Class<U> responseType,
+      Headers headers,
+      Map<String, String> queryParameters,
+      Deadline deadline,
+      CallContext context)
+      throws IncogniaException {
+    Request request = buildPostRequest(path, body, headers, queryParameters, context);
+    return execute(
+        path, request, deadline, context, response -> parseResponse(response, responseType));
   }
 
   public <T> T doPostFormUrlEncoded(
       String path, String body, Class<T> responseType, Map<String, String> headers)
       throws IncogniaException {
-    RequestBody requestBody = RequestBody.create(body, MEDIA_TYPE_FORM_URLENCODED);
-    Request request =
-        new Builder()
-            .url(baseUrl.newBuilder().addPathSegments(path).build())
-            .post(requestBody)
-            .headers(Headers.of(headers))
-            .build();
-    try (Response response = httpClient.newCall(request).execute()) {
-      return parseResponse(response, responseType);
-    } catch (InterruptedIOException e) {
-      throw new IncogniaException("network call timeout", e);
-    } catch (IOException e) {
-      throw new IncogniaException("network call failed", e);
-    }
+    Request request = buildFormUrlEncodedRequest(path, body, headers);
+    return execute(
+        path, request, Deadline.none(), null, response -> parseResponse(response, responseType));
+  }
+
+  public <T> CompletableFuture<T> doPostFormUrlEncodedAsync(
+      String path, String body, Class<T> responseType, Map<String, String> headers) {
+    Request request = buildFormUrlEncodedRequest(path, body, headers);
+    return enqueue(
+        path, request, Deadline.none(), null, response -> parseResponse(response, responseType));
   }
 
   public <T> void doPost(
       String path, T body, Map<String, String> headers, Map<String, String> queryParameters)
       throws IncogniaException {
-    Request request = buildPostRequest(path, body, headers, queryParameters);
-    try (Response ignored = httpClient.newCall(request).execute()) {
-    } catch (InterruptedIOException e) {
-      throw new IncogniaException("network call timeout", e);
+    doPost(path, body, Headers.of(headers), queryParameters);
+  }
+
+  public <T> void doPost(String path, T body, Headers headers, Map<String, String> queryParameters)
+      throws IncogniaException {
+    doPost(path, body, headers, queryParameters, null);
+  }
+
+  <T> void doPost(
+      String path,
+      T body,
+      Headers headers,
+      Map<String, String> queryParameters,
+      CallContext context)
+      throws IncogniaException {
+    Request request = buildPostRequest(path, body, headers, queryParameters, context);
+    execute(path, request, Deadline.none(), context, response -> null);
+  }
+
+  public <T, U> CompletableFuture<U> doPostAsync(
+      String path,
+      T body,
+      Class<U> responseType,
+      Map<String, String> headers,
+      Map<String, String> queryParameters) {
+    return doPostAsync(
+        path, body, responseType, Headers.of(headers), queryParameters, Deadline.none());
+  }
+
+  public <T, U> CompletableFuture<U> doPostAsync(
+      String path,
+      T body,
+      Class<U> responseType,
+      Headers headers,
+      Map<String, String> queryParameters,
+      Deadline deadline) {
+    return doPostAsync(path, body, responseType, headers, queryParameters, deadline, null);
+  }
+
+  <T, U> CompletableFuture<U> doPostAsync(
+      String path,
+      T body,
+      Class<U> responseType,
+      Headers headers,
+      Map<String, String> queryParameters,
+      Deadline deadline,
+      CallContext context) {
+    Request request = buildPostRequest(path, body, headers, queryParameters, context);
+    return enqueue(
+        path, request, deadline, context, response -> parseResponse(response, responseType));
+  }
+
+  public <T> CompletableFuture<Void> doPostAsync(
+      String path, T body, Map<String, String> headers, Map<String, String> queryParameters) {
+    return doPostAsync(path, body, Headers.of(headers), queryParameters);
+  }
+
+  public <T> CompletableFuture<Void> doPostAsync(
+      String path, T body, Headers headers, Map<String, String> queryParameters) {
+    return doPostAsync(path, body, headers, queryParameters, null);
+  }
+
+  <T> CompletableFuture<Void> doPostAsync(
+      String path,
+      T body,
+      Headers headers,
+      Map<String, String> queryParameters,
+      CallContext context) {
+    Request request = buildPostRequest(path, body, headers, queryParameters, context);
+    return enqueue(path, request, Deadline.none(), context, response -> null);
+  }
+
+  /**
+   * Opens connections to the api by sending up to {@code connections} concurrent {@code HEAD}
+   * requests to its base url. Their responses are ignored; only network failures are reported.
+   *
+   * <p>The requests only open as many connections as they need: over HTTP/2 they are all
+   * multiplexed onto a single connection, which is enough for any number of concurrent requests.
+   * Over HTTP/1.1 at most {@code maxRequestsPerHost} of them are sent at once, so no more
+   * connections than that are opened, and fewer if some requests finish before others start.
+   *
+   * @param connections the maximum number of concurrent requests
+   * @return the number of connections in the pool of the http client once the requests are done
+   * @throws IncogniaException if any of the requests fails
+   */
+  public int warmUp(int connections) throws IncogniaException {
+    Request request = new Request.Builder().url(baseUrl).head().build();
+    int requests = Math.min(connections, httpClient.dispatcher().getMaxRequestsPerHost());
+    CompletableFuture<?>[] calls = new CompletableFuture<?>[requests];
+    for (int i = 0; i < requests; i++) {
+      calls[i] = enqueue(request, Deadline.none(), response -> null);
+    }
+    try {
+      CompletableFuture.allOf(calls).get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IncogniaException) {
+        throw (IncogniaException) cause;
+      }
+      throw new IncogniaException("failed warming up connections", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IncogniaException("interrupted while warming up connections", e);
+    }
+    return httpClient.connectionPool().connectionCount();
+  }
+
+  private <U> U execute(
+      String path,
+      Request request,
+      Deadline deadline,
+      CallContext context,
+      ResponseHandler<U> responseHandler)
+      throws IncogniaException {
+    Bulkhead bulkhead = bulkheads.forPath(path);
+    if (bulkhead != null) {
+      awaitPermit(bulkhead, deadline);
+      if (context != null) {
+        context.start();
+      }
+    }
+    try (Response response = newCall(request, deadline).execute()) {
+      return responseHandler.handle(response);
     } catch (IOException e) {
-      throw new IncogniaException("network call failed", e);
+      throw toIncogniaException(e);
+    } finally {
+      if (bulkhead != null) {
+        bulkhead.release();
+      }
     }
   }
 
+  private void awaitPermit(Bulkhead bulkhead, Deadline deadline) throws IncogniaException {
+    CompletableFuture<Void> permit = bulkhead.acquire();
+    try {
+      long timeoutNanos = permitTimeoutNanos(deadline);
+      if (timeoutNanos >= 0) {
+        permit.get(timeoutNanos, TimeUnit.NANOSECONDS);
+      } else {
+        permit.get();
+      }
+    } catch (ExecutionException e) {
+      throw (IncogniaException) e.getCause();
+    } catch (TimeoutException e) {
+      if (bulkhead.abandon(permit)) {
+        throw new BulkheadFullException(bulkhead.getName());
+      }
+      // the permit was granted while the timeout fired, so the call can go ahead
+      permit.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (!bulkhead.abandon(permit)) {
+        permit.join();
+        bulkhead.release();
+      }
+      throw new IncogniaException("interrupted while waiting for a bulkhead permit", e);
+    }
+  }
+
+  /**
+   * Returns how long a call may wait for a bulkhead permit: until its deadline or the client's call
+   * timeout, whichever comes first, or -1 if neither is set.
+   */
+  private long permitTimeoutNanos(Deadline deadline) {
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(httpClient.callTimeoutMillis());
+    if (deadline.isSet()) {
+      long remainingNanos = Math.max(0, deadline.remainingNanos());
+      return timeoutNanos > 0 ? Math.min(timeoutNanos, remainingNanos) : remainingNanos;
+    }
+    return timeoutNanos > 0 ? timeoutNanos : -1;
+  }
+
+  private <U> CompletableFuture<U> enqueue(
+      String path,
+      Request request,
+      Deadline deadline,
+      CallContext context,
+      ResponseHandler<U> responseHandler) {
+    Bulkhead bulkhead = bulkheads.forPath(path);
+    if (bulkhead == null) {
+      return enqueue(request, deadline, responseHandler);
+    }
+    CompletableFuture<U> future = new CompletableFuture<>();
+    CompletableFuture<Void> permit = bulkhead.acquire();
+    long timeoutNanos = permitTimeoutNanos(deadline);
+    if (timeoutNanos >= 0 && !permit.isDone()) {
+      ScheduledFuture<?> expiration =
+          InternalScheduler.get()
+              .schedule(() -> bulkhead.abandon(permit), timeoutNanos, TimeUnit.NANOSECONDS);
+      permit.whenComplete((ignored, throwable) -> expiration.cancel(false));
+    }
+    permit.whenComplete(
+        (ignored, permitThrowable) -> {
+          if (permitThrowable != null) {
+            // an abandoned permit is cancelled: either the wait timed out, or the caller cancelled
+            // the future, which the exception then does not override
+            future.completeExceptionally(
+                permitThrowable instanceof CancellationException
+                    ? new BulkheadFullException(bulkhead.getName())
+                    : permitThrowable);
+            return;
+          }
+          if (future.isDone()) {
+            bulkhead.release();
+            return;
+          }
+          if (context != null) {
+            context.start();
+          }
+          CompletableFuture<U> call = enqueue(request, deadline, responseHandler);
+          call.whenComplete(
+              (result, throwable) -> {
+                bulkhead.release();
+                if (throwable == null) {
+                  future.complete(result);
+                } else {
+                  future.completeExceptionally(throwable);
+                }
+              });
+          future.whenComplete(
+              (result, throwable) -> {
+                if (future.isCancelled()) {
+                  call.cancel(false);
+                }
+              });
+        });
+    future.whenComplete(
+        (result, throwable) -> {
+          if (future.isCancelled()) {
+            bulkhead.abandon(permit);
+          }
+        });
+    return future;
+  }
+
+  private <U> CompletableFuture<U> enqueue(
+      Request request, Deadline deadline, ResponseHandler<U> responseHandler) {
+    CompletableFuture<U> future = new CompletableFuture<>();
+    Call call;
+    try {
+      call = newCall(request, deadline);
+    } catch (IncogniaException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    call.enqueue(
+        new Callback() {
+          @Override
+          public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            future.completeExceptionally(toIncogniaException(e));
+          }
+
+          @Override
+          public void onResponse(@NotNull Call call, @NotNull Response response) {
+            try (Response ignored = response) {
+              future.complete(responseHandler.handle(response));
+            } catch (IncogniaException e) {
+              future.completeExceptionally(e);
+            } catch (Throwable e) {
+              // anything escaping here would kill the dispatcher thread and never complete the
+              // future, leaking the permits chained on it
+              future.completeExceptionally(
+                  new IncogniaException("failed reading response body", e));
+            }
+          }
+        });
+    future.whenComplete(
+        (result, throwable) -> {
+          if (future.isCancelled()) {
+            call.cancel();
+          }
+        });
+    return future;
+  }
+
+  /**
+   * Creates the call for {@code request}, overriding the client's call timeout with the time left
+   * until {@code deadline} so that OkHttp cancels the call, and releases its connection, once the
+   * deadline passes.
+   */
+  private Call newCall(Request request, Deadline deadline) throws IncogniaException {
+    Call call = httpClient.newCall(request);
+    if (deadline.isSet()) {
+      long remainingNanos = deadline.remainingNanos();
+      if (remainingNanos <= 0) {
+        throw new IncogniaException("network call timeout");
+      }
+      long callTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(httpClient.callTimeoutMillis());
+      if (callTimeoutNanos == 0 || remainingNanos < callTimeoutNanos) {
+        call.timeout().timeout(remainingNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    return call;
+  }
+
+  private static IncogniaException toIncogniaException(IOException e) {
+    // request bodies are serialized while the request is sent, so their errors surface here
+    if (e instanceof JsonRequestBody.WriteException) {
+      return new IncogniaException("failed writing request body", e.getCause());
+    }
+    if (e instanceof InterruptedIOException) {
+      return new IncogniaException("network call timeout", e);
+    }
+    return new IncogniaException("network call failed", e);
+  }
+
+  private Request buildFormUrlEncodedRequest(
+      String path, String body, Map<String, String> headers) {
+    return new Builder()
+        .url(baseUrl.newBuilder().addPathSegments(path).build())
+        .post(RequestBody.create(body, MEDIA_TYPE_FORM_URLENCODED))
+        .headers(Headers.of(headers))
+        .build();
+  }
+
   @NotNull
   private <T> Request buildPostRequest(
-      String path, T body, Map<String, String> headers, Map<String, String> queryParameters)
-      throws IncogniaException {
+      String path,
+      T body,
+      Headers headers,
+      Map<String, String> queryParameters,
+      CallContext context) {
     HttpUrl.Builder urlBuilder = baseUrl.newBuilder().addPathSegments(path);
     for (Map.Entry<String, String> entry : queryParameters.entrySet()) {
       urlBuilder.addQueryParameter(entry.getKey(), entry.getValue());
     }
     Builder requestBuilder = new Builder().url(urlBuilder.build());
-    RequestBody requestBody;
-    try {
-      requestBody =
-          body == null
-              ? RequestBody.create("", null)
-              : RequestBody.create(objectMapper.writeValueAsBytes(body), MEDIA_TYPE_JSON);
-    } catch (JsonProcessingException e) {
-      throw new IncogniaException("failed writing request body", e);
+    RequestBody requestBody =
+        body == null
+            ? RequestBody.create("", null)
+            : new JsonRequestBody(jsonCodec, MEDIA_TYPE_JSON, body);
+    requestBuilder.post(requestBody).headers(headers);
+    // added to the copy the builder makes of the shared headers, instead of copying them again
+    if (context != null && context.getReportedLatencyMillis() >= 0) {
+      requestBuilder.addHeader(LATENCY_HEADER, Long.toString(context.getReportedLatencyMillis()));
     }
-    return requestBuilder.post(requestBody).headers(Headers.of(headers)).build();
+    return requestBuilder.build();
   }
 
+  @SuppressWarnings("unchecked")
   private <U> U parseResponse(Response response, Class<U> responseType) throws IncogniaException {
     if (!response.isSuccessful()) {
-      String payload;
       try (ResponseBody body = response.body()) {
-        payload = body.string();
+        byte[] payload = body.bytes();
         Map<String, Object> values =
-            payload.length() == 0
+            payload.length == 0
                 ? Collections.emptyMap()
-                : objectMapper.readValue(payload, mapType);
+                : jsonCodec.read(new ByteArrayInputStream(payload), Map.class);
         throw new IncogniaAPIException(response.code(), values);
-      } catch (IOException e) {
+      } catch (IOException | RuntimeException e) {
         throw new IncogniaException("failed reading response body", e);
       }
     }
     try {
-      return objectMapper.readValue(response.body().byteStream(), responseType);
-    } catch (IOException e) {
+      return jsonCodec.read(response.body().byteStream(), responseType);
+    } catch (IOException | RuntimeException e) {
       throw new IncogniaException("failed reading response body", e);
     }
   }
+
+  private interface ResponseHandler<U> {
+    U handle(Response response) throws IncogniaException;
+  }
 }
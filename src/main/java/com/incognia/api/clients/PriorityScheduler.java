@@ -0,0 +1,198 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.RequestPriority;
+import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.exceptions.RequestShedException;
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.PrioritySchedulingOptions;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of in-flight requests and, once the cap is reached, queues the extra requests by
+ * {@link RequestPriority}, so that freed slots go to the most important waiting request. When the
+ * queue is full, the least important and most recent waiting request is shed to make room, unless
+ * the new request is not more important than it, in which case the new one is shed. Requests that
+ * wait longer than the queue time, or than their deadline, are shed as well.
+ *
+ * <p>Each priority class below {@link RequestPriority#CRITICAL} may also leave {@code
+ * reservedInFlightPerPriority} slots more than the class above it to the more important classes, so
+ * that a flood of less important requests cannot take every slot before a more important one
+ * arrives. A request is only admitted, directly or from the queue, while the number of in-flight
+ * requests is below the limit of its class.
+ *
+ * <p>Permits are handed out as futures so the same scheduler can be used from blocking and
+ * non-blocking paths.
+ */
+public final class PriorityScheduler {
+  private static final Comparator<Waiter> WAITER_ORDER =
+      Comparator.comparing((Waiter waiter) -> waiter.priority)
+          .thenComparingLong(waiter -> waiter.sequence);
+
+  private final int maxInFlight;
+  private final int reservedInFlightPerPriority;
+  private final int maxQueued;
+  private final long maxQueueTimeNanos;
+  private final TreeSet<Waiter> waiters = new TreeSet<>(WAITER_ORDER);
+  private long sequence;
+  private int inFlight;
+
+  public PriorityScheduler(PrioritySchedulingOptions options) {
+    Asserts.assertNotNull(options, "priority scheduling options");
+    Asserts.assertPositive(options.getMaxInFlight(), "max in flight");
+    Asserts.assertPositive(options.getMaxQueueTimeMillis(), "max queue time millis");
+    if (options.getMaxQueued() < 0) {
+      throw new IllegalArgumentException("'max queued' cannot be negative");
+    }
+    int reserved = options.getReservedInFlightPerPriority();
+    if (reserved < 0) {
+      throw new IllegalArgumentException("'reserved in flight per priority' cannot be negative");
+    }
+    if ((long) reserved * RequestPriority.LOW.ordinal() >= options.getMaxInFlight()) {
+      throw new IllegalArgumentException(
+          "'reserved in flight per priority' must leave the least important priority a slot");
+    }
+    this.maxInFlight = options.getMaxInFlight();
+    this.reservedInFlightPerPriority = reserved;
+    this.maxQueued = options.getMaxQueued();
+    this.maxQueueTimeNanos = TimeUnit.MILLISECONDS.toNanos(options.getMaxQueueTimeMillis());
+  }
+
+  /**
+   * Requests a permit. The returned future completes once the permit is granted, or fails with a
+   * {@link RequestShedException} if the request is shed. Every granted permit must be given back
+   * through {@link #release()}.
+   */
+  CompletableFuture<Void> acquire(RequestPriority priority, Deadline deadline) {
+    Waiter waiter;
+    Waiter shed = null;
+    synchronized (this) {
+      if (inFlight < limit(priority)) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+      waiter = new Waiter(priority, sequence++);
+      if (waiters.size() >= maxQueued) {
+        Waiter leastImportant = waiters.isEmpty() ? null : waiters.last();
+        if (leastImportant == null || leastImportant.priority.compareTo(priority) <= 0) {
+          shed = waiter;
+        } else {
+          waiters.remove(leastImportant);
+          shed = leastImportant;
+        }
+      }
+      if (shed != waiter) {
+        waiters.add(waiter);
+      }
+    }
+    if (shed != null) {
+      shed.completeExceptionally(new RequestShedException(shed.priority));
+    }
+    if (!waiter.isDone()) {
+      scheduleExpiration(waiter, deadline);
+    }
+    return waiter;
+  }
+
+  /** Blocks until a permit is granted, throwing if the request is shed. */
+  void await(RequestPriority priority, Deadline deadline) throws IncogniaException {
+    CompletableFuture<Void> permit = acquire(priority, deadline);
+    try {
+      permit.get();
+    } catch (ExecutionException e) {
+      throw (IncogniaException) e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (!abandon(permit)) {
+        try {
+          permit.join();
+          release();
+        } catch (RuntimeException ignored) {
+          // the request was shed meanwhile, so there is no permit to give back
+        }
+      }
+      throw new IncogniaException("interrupted while waiting for a scheduling permit", e);
+    }
+  }
+
+  /**
+   * Gives up a permit that is still waiting in the queue.
+   *
+   * @return false if the permit was already granted or shed
+   */
+  boolean abandon(CompletableFuture<Void> permit) {
+    if (!(permit instanceof Waiter) || !remove((Waiter) permit)) {
+      return false;
+    }
+    permit.cancel(false);
+    return true;
+  }
+
+  /**
+   * Gives back a granted permit, handing it over to the most important waiter if there is one and
+   * its class is under its limit once the permit is given back.
+   */
+  void release() {
+    Waiter next;
+    synchronized (this) {
+      next = waiters.isEmpty() ? null : waiters.first();
+      if (next == null || inFlight - 1 >= limit(next.priority)) {
+        inFlight--;
+        return;
+      }
+      waiters.pollFirst();
+    }
+    next.complete(null);
+  }
+
+  /**
+   * Returns how many requests may be in flight for a request of {@code priority} to be admitted.
+   */
+  private int limit(RequestPriority priority) {
+    return maxInFlight - reservedInFlightPerPriority * priority.ordinal();
+  }
+
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  synchronized int getQueued() {
+    return waiters.size();
+  }
+
+  private void scheduleExpiration(Waiter waiter, Deadline deadline) {
+    long timeoutNanos = maxQueueTimeNanos;
+    if (deadline.isSet()) {
+      timeoutNanos = Math.max(0, Math.min(timeoutNanos, deadline.remainingNanos()));
+    }
+    ScheduledFuture<?> expiration =
+        InternalScheduler.get()
+            .schedule(
+                () -> {
+                  if (remove(waiter)) {
+                    waiter.completeExceptionally(new RequestShedException(waiter.priority));
+                  }
+                },
+                timeoutNanos,
+                TimeUnit.NANOSECONDS);
+    waiter.whenComplete((ignored, throwable) -> expiration.cancel(false));
+  }
+
+  private synchronized boolean remove(Waiter waiter) {
+    return waiters.remove(waiter);
+  }
+
+  private static final class Waiter extends CompletableFuture<Void> {
+    private final RequestPriority priority;
+    private final long sequence;
+
+    private Waiter(RequestPriority priority, long sequence) {
+      this.priority = priority;
+      this.sequence = sequence;
+    }
+  }
+}
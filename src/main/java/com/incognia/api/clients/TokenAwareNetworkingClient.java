@@ -1,17 +1,28 @@
 package com.incognia.api.clients;
 
+import com.incognia.common.RequestPriority;
 import com.incognia.common.Token;
+import com.incognia.common.exceptions.BulkheadFullException;
+import com.incognia.common.exceptions.ConcurrencyLimitExceededException;
+import com.incognia.common.exceptions.IncogniaAPIException;
 import com.incognia.common.exceptions.IncogniaException;
-import java.util.HashMap;
+import com.incognia.common.utils.CompletableFutures;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 
 public class TokenAwareNetworkingClient {
   private static final String USER_AGENT_HEADER = "User-Agent";
   private static final String AUTHORIZATION_HEADER = "Authorization";
-  private static final String LATENCY_HEADER = "X-Incognia-Latency";
+  private static final int UNAUTHORIZED_STATUS_CODE = 401;
+  private static final int TOO_MANY_REQUESTS_STATUS_CODE = 429;
+  private static final int SERVER_ERROR_STATUS_CODE = 500;
   private static final String USER_AGENT_HEADER_CONTENT =
       String.format(
           "incognia-java/%s (%s %s %s) Java/%s",
@@ -23,7 +34,11 @@ public class TokenAwareNetworkingClient {
 
   private final NetworkingClient networkingClient;
   private final TokenProvider tokenProvider;
-  private final AtomicReference<Long> lastLatency = new AtomicReference<>();
+  private final AsyncTokenProvider asyncTokenProvider;
+  private final AimdConcurrencyLimiter concurrencyLimiter;
+  private final PriorityScheduler priorityScheduler;
+  private volatile long lastLatencyMillis = -1;
+  private volatile TokenHeaders tokenHeaders;
 
   public TokenAwareNetworkingClient(
       OkHttpClient httpClient, String baseUrl, String clientId, String clientSecret) {
@@ -36,47 +51,453 @@ public class TokenAwareNetworkingClient {
 
   public TokenAwareNetworkingClient(
       OkHttpClient httpClient, String baseUrl, TokenProvider tokenProvider) {
-    this.networkingClient = new NetworkingClient(httpClient, baseUrl);
+    this(new NetworkingClient(httpClient, baseUrl), tokenProvider, null);
+  }
+
+  public TokenAwareNetworkingClient(
+      NetworkingClient networkingClient,
+      TokenProvider tokenProvider,
+      AimdConcurrencyLimiter concurrencyLimiter) {
+    this(networkingClient, tokenProvider, concurrencyLimiter, null);
+  }
+
+  public TokenAwareNetworkingClient(
+      NetworkingClient networkingClient,
+      TokenProvider tokenProvider,
+      AimdConcurrencyLimiter concurrencyLimiter,
+      PriorityScheduler priorityScheduler) {
+    this.networkingClient = networkingClient;
     this.tokenProvider = tokenProvider;
+    this.asyncTokenProvider = TokenProviders.toAsync(tokenProvider);
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.priorityScheduler = priorityScheduler;
   }
 
   public <T, U> U doPost(
       String path, T body, Class<U> responseType, Map<String, String> queryParameters)
       throws IncogniaException {
-    Token token = tokenProvider.getToken();
-    long start = System.nanoTime();
-    U result =
-        networkingClient.doPost(path, body, responseType, buildHeaders(token), queryParameters);
-    lastLatency.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
-    return result;
+    return doPost(
+        path, body, responseType, queryParameters, Deadline.none(), RequestPriority.NORMAL);
+  }
+
+  public <T, U> U doPost(
+      String path,
+      T body,
+      Class<U> responseType,
+      Map<String, String> queryParameters,
+      Deadline deadline,
+      RequestPriority priority)
+      throws IncogniaException {
+    return execute(
+        priority,
+        deadline,
+        (headers, context) ->
+            networkingClient.doPost(
+                path, body, responseType, headers, queryParameters, deadline, context));
   }
 
   public <T, U> U doPost(String path, T body, Class<U> responseType) throws IncogniaException {
-    Token token = tokenProvider.getToken();
-    long start = System.nanoTime();
-    U result = networkingClient.doPost(path, body, responseType, buildHeaders(token));
-    lastLatency.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
-    return result;
+    return execute(
+        RequestPriority.NORMAL,
+        Deadline.none(),
+        (headers, context) ->
+            networkingClient.doPost(
+                path,
+                body,
+                responseType,
+                headers,
+                Collections.emptyMap(),
+                Deadline.none(),
+                context));
   }
 
   public <T> void doPost(String path, T body, Map<String, String> queryParameters)
       throws IncogniaException {
+    doPost(path, body, queryParameters, RequestPriority.NORMAL);
+  }
+
+  public <T> void doPost(
+      String path, T body, Map<String, String> queryParameters, RequestPriority priority)
+      throws IncogniaException {
+    execute(
+        priority,
+        Deadline.none(),
+        (headers, context) -> {
+          networkingClient.doPost(path, body, headers, queryParameters, context);
+          return null;
+        });
+  }
+
+  public <T, U> CompletableFuture<U> doPostAsync(
+      String path, T body, Class<U> responseType, Map<String, String> queryParameters) {
+    return doPostAsync(
+        path, body, responseType, queryParameters, Deadline.none(), RequestPriority.NORMAL);
+  }
+
+  public <T, U> CompletableFuture<U> doPostAsync(
+      String path,
+      T body,
+      Class<U> responseType,
+      Map<String, String> queryParameters,
+      Deadline deadline,
+      RequestPriority priority) {
+    return executeAsync(
+        priority,
+        deadline,
+        (headers, context) ->
+            networkingClient.doPostAsync(
+                path, body, responseType, headers, queryParameters, deadline, context));
+  }
+
+  public <T, U> CompletableFuture<U> doPostAsync(String path, T body, Class<U> responseType) {
+    return doPostAsync(path, body, responseType, Collections.emptyMap());
+  }
+
+  public <T> CompletableFuture<Void> doPostAsync(
+      String path, T body, Map<String, String> queryParameters) {
+    return doPostAsync(path, body, queryParameters, RequestPriority.NORMAL);
+  }
+
+  public <T> CompletableFuture<Void> doPostAsync(
+      String path, T body, Map<String, String> queryParameters, RequestPriority priority) {
+    return executeAsync(
+        priority,
+        Deadline.none(),
+        (headers, context) ->
+            networkingClient.doPostAsync(path, body, headers, queryParameters, context));
+  }
+
+  /**
+   * Gets a token and opens up to {@code connections} connections to the api, so that the first
+   * requests do not wait for either. See {@link NetworkingClient#warmUp(int)}.
+   *
+   * @param connections the maximum number of connections to open
+   * @return the number of pooled connections once done
+   * @throws IncogniaException if the token cannot be obtained or the api cannot be reached
+   */
+  public int warmUp(int connections) throws IncogniaException {
+    buildHeaders(tokenProvider.getToken());
+    return networkingClient.warmUp(connections);
+  }
+
+  /**
+   * Waits for a scheduling permit, if requests are scheduled by priority, and only then gets the
+   * token, so a queued request neither holds on to a token that may expire while it waits nor
+   * triggers a renewal it may never use.
+   */
+  private <U> U execute(RequestPriority priority, Deadline deadline, BlockingCall<U> call)
+      throws IncogniaException {
+    if (priorityScheduler == null) {
+      return executeWithToken(deadline, call);
+    }
+    priorityScheduler.await(priority, deadline);
+    try {
+      return executeWithToken(deadline, call);
+    } finally {
+      priorityScheduler.release();
+    }
+  }
+
+  private <U> U executeWithToken(Deadline deadline, BlockingCall<U> call) throws IncogniaException {
     Token token = tokenProvider.getToken();
-    long start = System.nanoTime();
-    networkingClient.doPost(path, body, buildHeaders(token), queryParameters);
-    lastLatency.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return sendAuthenticated(token, buildHeaders(token), deadline, call);
+  }
+
+  /** Sends the call, retrying it once with a renewed token if {@code token} is rejected. */
+  private <U> U sendAuthenticated(
+      Token token, Headers headers, Deadline deadline, BlockingCall<U> call)
+      throws IncogniaException {
+    try {
+      return send(headers, deadline, call);
+    } catch (IncogniaAPIException e) {
+      if (e.getStatusCode() != UNAUTHORIZED_STATUS_CODE) {
+        throw e;
+      }
+      Token renewedToken = awaitRenewal(tokenProvider.invalidate(token));
+      if (renewedToken == null || renewedToken.equals(token)) {
+        throw e;
+      }
+      return send(buildHeaders(renewedToken), deadline, call);
+    }
+  }
+
+  private <U> U send(Headers headers, Deadline deadline, BlockingCall<U> call)
+      throws IncogniaException {
+    acquireConcurrencySlot();
+    CallContext context = new CallContext(lastLatencyMillis);
+    U result;
+    try {
+      result = call.execute(headers, context);
+    } catch (IncogniaException | RuntimeException e) {
+      releaseConcurrencySlot(context, deadline, e);
+      throw e;
+    }
+    releaseConcurrencySlot(context, deadline, null);
+    recordLatency(context);
+    return result;
+  }
+
+  /** Asynchronous version of {@link #execute}, which also waits for the permit first. */
+  private <U> CompletableFuture<U> executeAsync(
+      RequestPriority priority, Deadline deadline, AsyncCall<U> call) {
+    if (priorityScheduler == null) {
+      return executeWithTokenAsync(deadline, call);
+    }
+    CompletableFuture<U> future = new CompletableFuture<>();
+    CompletableFuture<Void> permit = priorityScheduler.acquire(priority, deadline);
+    permit.whenComplete(
+        (ignored, permitThrowable) -> {
+          if (permitThrowable != null) {
+            future.completeExceptionally(permitThrowable);
+            return;
+          }
+          if (future.isDone()) {
+            priorityScheduler.release();
+            return;
+          }
+          CompletableFuture<U> result;
+          try {
+            result = executeWithTokenAsync(deadline, call);
+          } catch (RuntimeException e) {
+            priorityScheduler.release();
+            future.completeExceptionally(e);
+            return;
+          }
+          result.whenComplete(
+              (value, throwable) -> {
+                priorityScheduler.release();
+                if (throwable == null) {
+                  future.complete(value);
+                } else {
+                  future.completeExceptionally(throwable);
+                }
+              });
+          future.whenComplete(
+              (value, throwable) -> {
+                if (future.isCancelled()) {
+                  result.cancel(false);
+                }
+              });
+        });
+    future.whenComplete(
+        (value, throwable) -> {
+          if (future.isCancelled()) {
+            priorityScheduler.abandon(permit);
+          }
+        });
+    return future;
+  }
+
+  private <U> CompletableFuture<U> executeWithTokenAsync(Deadline deadline, AsyncCall<U> call) {
+    CompletableFuture<Token> pendingToken;
+    try {
+      pendingToken = asyncTokenProvider.getTokenAsync().toCompletableFuture();
+    } catch (RuntimeException e) {
+      return CompletableFutures.failedFuture(e);
+    }
+    if (pendingToken.isDone() && !pendingToken.isCompletedExceptionally()) {
+      return executeWithTokenAsync(deadline, pendingToken.join(), call);
+    }
+    CompletableFuture<U> future = new CompletableFuture<>();
+    pendingToken.whenComplete(
+        (token, tokenThrowable) -> {
+          if (tokenThrowable != null) {
+            future.completeExceptionally(unwrap(tokenThrowable));
+            return;
+          }
+          if (future.isDone()) {
+            return;
+          }
+          CompletableFuture<U> result = executeWithTokenAsync(deadline, token, call);
+          result.whenComplete(
+              (value, throwable) -> {
+                if (throwable == null) {
+                  future.complete(value);
+                } else {
+                  future.completeExceptionally(unwrap(throwable));
+                }
+              });
+          future.whenComplete(
+              (value, throwable) -> {
+                if (future.isCancelled()) {
+                  result.cancel(false);
+                }
+              });
+        });
+    return future;
+  }
+
+  private <U> CompletableFuture<U> executeWithTokenAsync(
+      Deadline deadline, Token token, AsyncCall<U> call) {
+    Headers headers;
+    try {
+      headers = buildHeaders(token);
+    } catch (IncogniaException e) {
+      return CompletableFutures.failedFuture(e);
+    }
+    return sendAuthenticatedAsync(token, headers, deadline, call);
+  }
+
+  /**
+   * Asynchronous version of {@link #sendAuthenticated}. Cancelling the returned future cancels the
+   * attempt in flight.
+   */
+  private <U> CompletableFuture<U> sendAuthenticatedAsync(
+      Token token, Headers headers, Deadline deadline, AsyncCall<U> call) {
+    CompletableFuture<U> first = sendAsync(headers, deadline, call);
+    CompletableFuture<U> result = new CompletableFuture<>();
+    AtomicReference<CompletableFuture<U>> attempt = new AtomicReference<>(first);
+    first.whenComplete(
+        (value, throwable) -> {
+          if (throwable == null) {
+            result.complete(value);
+            return;
+          }
+          Throwable cause = unwrap(throwable);
+          if (result.isDone()
+              || !(cause instanceof IncogniaAPIException)
+              || ((IncogniaAPIException) cause).getStatusCode() != UNAUTHORIZED_STATUS_CODE) {
+            result.completeExceptionally(cause);
+            return;
+          }
+          CompletableFuture<U> retry =
+              tokenProvider
+                  .invalidate(token)
+                  .thenCompose(
+                      renewedToken -> {
+                        if (renewedToken == null || renewedToken.equals(token)) {
+                          return CompletableFutures.failedFuture(cause);
+                        }
+                        try {
+                          return sendAsync(buildHeaders(renewedToken), deadline, call);
+                        } catch (IncogniaException | RuntimeException e) {
+                          return CompletableFutures.failedFuture(e);
+                        }
+                      });
+          attempt.set(retry);
+          retry.whenComplete(
+              (retryValue, retryThrowable) -> {
+                if (retryThrowable == null) {
+                  result.complete(retryValue);
+                } else {
+                  result.completeExceptionally(unwrap(retryThrowable));
+                }
+              });
+        });
+    result.whenComplete(
+        (value, throwable) -> {
+          if (result.isCancelled()) {
+            attempt.get().cancel(false);
+          }
+        });
+    return result;
   }
 
-  private Map<String, String> buildHeaders(Token token) throws IncogniaException {
-    validateToken(token);
-    Map<String, String> headers = new HashMap<>();
-    headers.put(USER_AGENT_HEADER, USER_AGENT_HEADER_CONTENT);
-    headers.put(AUTHORIZATION_HEADER, token.getTokenType() + " " + token.getAccessToken());
-    Long latency = lastLatency.get();
-    if (latency != null) {
-      headers.put(LATENCY_HEADER, Long.toString(latency));
+  private static Throwable unwrap(Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      return throwable.getCause();
     }
-    return headers;
+    return throwable;
+  }
+
+  private static Token awaitRenewal(CompletableFuture<Token> renewal) throws IncogniaException {
+    try {
+      return renewal.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IncogniaException) {
+        throw (IncogniaException) cause;
+      }
+      throw new IncogniaException("failed renewing rejected token", cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IncogniaException("interrupted while renewing rejected token", e);
+    }
+  }
+
+  private <U> CompletableFuture<U> sendAsync(
+      Headers headers, Deadline deadline, AsyncCall<U> call) {
+    try {
+      acquireConcurrencySlot();
+    } catch (ConcurrencyLimitExceededException e) {
+      return CompletableFutures.failedFuture(e);
+    }
+    CallContext context = new CallContext(lastLatencyMillis);
+    CompletableFuture<U> result;
+    try {
+      result = call.execute(headers, context);
+    } catch (RuntimeException e) {
+      releaseConcurrencySlot(context, deadline, e);
+      return CompletableFutures.failedFuture(e);
+    }
+    result.whenComplete(
+        (value, throwable) -> {
+          releaseConcurrencySlot(context, deadline, throwable);
+          if (throwable == null) {
+            recordLatency(context);
+          }
+        });
+    return result;
+  }
+
+  private void acquireConcurrencySlot() throws ConcurrencyLimitExceededException {
+    if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+      throw new ConcurrencyLimitExceededException(concurrencyLimiter.getLimit());
+    }
+  }
+
+  /**
+   * Reports the outcome of a call to the limiter. Calls rejected locally, by a full bulkhead or
+   * because the caller's deadline ran out, say nothing about how loaded the api is, so they are
+   * ignored rather than counted as drops.
+   */
+  private void releaseConcurrencySlot(CallContext context, Deadline deadline, Throwable throwable) {
+    if (concurrencyLimiter == null) {
+      return;
+    }
+    throwable = unwrap(throwable);
+    if (throwable == null) {
+      concurrencyLimiter.onSuccess(context.elapsedNanos());
+    } else if (throwable instanceof IncogniaAPIException) {
+      int statusCode = ((IncogniaAPIException) throwable).getStatusCode();
+      if (statusCode == TOO_MANY_REQUESTS_STATUS_CODE || statusCode >= SERVER_ERROR_STATUS_CODE) {
+        concurrencyLimiter.onDropped();
+      } else {
+        concurrencyLimiter.onSuccess(context.elapsedNanos());
+      }
+    } else if (throwable instanceof BulkheadFullException
+        || (deadline.isSet() && deadline.remainingNanos() <= 0)) {
+      concurrencyLimiter.onIgnored();
+    } else if (throwable instanceof IncogniaException) {
+      concurrencyLimiter.onDropped();
+    } else {
+      concurrencyLimiter.onIgnored();
+    }
+  }
+
+  private void recordLatency(CallContext context) {
+    lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(context.elapsedNanos());
+  }
+
+  /**
+   * Builds the request headers, reusing the ones built for the previous request while the token is
+   * the same. The latency header is added by {@link NetworkingClient} on the request builder, which
+   * copies these headers anyway, so no headers are built per request here.
+   */
+  private Headers buildHeaders(Token token) throws IncogniaException {
+    TokenHeaders current = tokenHeaders;
+    if (current == null || current.token != token) {
+      validateToken(token);
+      current =
+          new TokenHeaders(
+              token,
+              new Headers.Builder()
+                  .add(USER_AGENT_HEADER, USER_AGENT_HEADER_CONTENT)
+                  .add(AUTHORIZATION_HEADER, token.getTokenType() + " " + token.getAccessToken())
+                  .build());
+      tokenHeaders = current;
+    }
+    return current.headers;
   }
 
   private void validateToken(Token token) throws IncogniaException {
@@ -90,4 +511,22 @@ public class TokenAwareNetworkingClient {
       throw new IncogniaException("token provider returned a token without access token");
     }
   }
+
+  private static final class TokenHeaders {
+    private final Token token;
+    private final Headers headers;
+
+    private TokenHeaders(Token token, Headers headers) {
+      this.token = token;
+      this.headers = headers;
+    }
+  }
+
+  private interface BlockingCall<U> {
+    U execute(Headers headers, CallContext context) throws IncogniaException;
+  }
+
+  private interface AsyncCall<U> {
+    CompletableFuture<U> execute(Headers headers, CallContext context);
+  }
 }
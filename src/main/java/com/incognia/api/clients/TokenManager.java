@@ -0,0 +1,92 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.TokenManagerOptions;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Renews the tokens of many {@link AutoRefreshTokenProvider}s, typically one per set of
+ * credentials, from a single timer thread and a small fixed pool of workers. Expirations are kept
+ * in a hashed timing wheel, so the cost of tracking them does not grow with the number of
+ * credentials. Share one instance between every {@code IncogniaAPI} instance through {@code
+ * CustomOptions.tokenManager}.
+ *
+ * <p>Renewals are asynchronous, so a worker holds on to its slot until the renewal it started
+ * completes: at most {@code workerThreads} tokens are renewed at the same time, however many fall
+ * due in the same tick.
+ */
+public class TokenManager {
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final ThreadPoolExecutor workers;
+  private final Semaphore renewals;
+  private final HashedTimingWheel timingWheel;
+
+  public TokenManager() {
+    this(TokenManagerOptions.builder().build());
+  }
+
+  public TokenManager(TokenManagerOptions options) {
+    Asserts.assertNotNull(options, "token manager options");
+    Asserts.assertPositive(options.getTickMillis(), "tick millis");
+    Asserts.assertPositive(options.getWheelSize(), "wheel size");
+    Asserts.assertPositive(options.getWorkerThreads(), "worker threads");
+    this.workers =
+        new ThreadPoolExecutor(
+            options.getWorkerThreads(),
+            options.getWorkerThreads(),
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "incognia-token-manager-" + THREAD_COUNT.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.renewals = new Semaphore(options.getWorkerThreads());
+    this.timingWheel =
+        new HashedTimingWheel(options.getTickMillis(), options.getWheelSize(), workers);
+  }
+
+  /** Stops renewing tokens. Providers fall back to renewing them on requests. */
+  public void shutdown() {
+    timingWheel.stop();
+    workers.shutdown();
+  }
+
+  /**
+   * @param renewal starts a renewal and returns a stage completed once it is done
+   */
+  HashedTimingWheel.Timeout schedule(
+      Supplier<? extends CompletionStage<?>> renewal, long delayMillis) {
+    return timingWheel.schedule(() -> renew(renewal), delayMillis);
+  }
+
+  private void renew(Supplier<? extends CompletionStage<?>> renewal) {
+    try {
+      renewals.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    CompletionStage<?> stage;
+    try {
+      stage = renewal.get();
+    } catch (RuntimeException e) {
+      renewals.release();
+      return;
+    }
+    stage.whenComplete((value, throwable) -> renewals.release());
+  }
+
+  int getScheduledCount() {
+    return timingWheel.getPendingCount();
+  }
+}
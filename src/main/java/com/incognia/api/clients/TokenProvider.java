@@ -2,7 +2,20 @@ package com.incognia.api.clients;
 
 import com.incognia.common.Token;
 import com.incognia.common.exceptions.IncogniaException;
+import java.util.concurrent.CompletableFuture;
 
 public interface TokenProvider {
   Token getToken() throws IncogniaException;
+
+  /**
+   * Called when the api rejects {@code token} as unauthorized, which happens when it is revoked or
+   * expires earlier than expected, so that it is no longer handed out.
+   *
+   * @param token the rejected token
+   * @return a future completed with the token to retry the request with, or with null if the
+   *     provider cannot replace the token, in which case the request is not retried
+   */
+  default CompletableFuture<Token> invalidate(Token token) {
+    return CompletableFuture.completedFuture(null);
+  }
 }
@@ -0,0 +1,82 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.Asserts;
+import com.incognia.common.utils.CompletableFutures;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class TokenProviders {
+  /**
+   * Adapts an {@link AsyncTokenProvider} to a {@link TokenProvider}. The returned provider also
+   * implements {@link AsyncTokenProvider}, so asynchronous requests still get their tokens without
+   * blocking; only synchronous requests wait for them.
+   *
+   * @param asyncTokenProvider the provider to adapt
+   * @return the adapted provider
+   */
+  public static TokenProvider fromAsync(AsyncTokenProvider asyncTokenProvider) {
+    Asserts.assertNotNull(asyncTokenProvider, "async token provider");
+    if (asyncTokenProvider instanceof TokenProvider) {
+      return (TokenProvider) asyncTokenProvider;
+    }
+    return new BlockingTokenProvider(asyncTokenProvider);
+  }
+
+  /**
+   * Adapts a {@link TokenProvider} to an {@link AsyncTokenProvider}. Providers that already
+   * implement it, such as {@link AutoRefreshTokenProvider} and {@link ManualRefreshTokenProvider},
+   * are returned as they are; others are called on the calling thread.
+   *
+   * @param tokenProvider the provider to adapt
+   * @return the adapted provider
+   */
+  public static AsyncTokenProvider toAsync(TokenProvider tokenProvider) {
+    Asserts.assertNotNull(tokenProvider, "token provider");
+    if (tokenProvider instanceof AsyncTokenProvider) {
+      return (AsyncTokenProvider) tokenProvider;
+    }
+    return () -> getTokenAsync(tokenProvider);
+  }
+
+  static CompletableFuture<Token> getTokenAsync(TokenProvider tokenProvider) {
+    try {
+      return CompletableFuture.completedFuture(tokenProvider.getToken());
+    } catch (IncogniaException | RuntimeException e) {
+      return CompletableFutures.failedFuture(e);
+    }
+  }
+
+  private static final class BlockingTokenProvider implements TokenProvider, AsyncTokenProvider {
+    private final AsyncTokenProvider asyncTokenProvider;
+
+    private BlockingTokenProvider(AsyncTokenProvider asyncTokenProvider) {
+      this.asyncTokenProvider = asyncTokenProvider;
+    }
+
+    @Override
+    public Token getToken() throws IncogniaException {
+      try {
+        return asyncTokenProvider.getTokenAsync().toCompletableFuture().get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IncogniaException) {
+          throw (IncogniaException) cause;
+        }
+        throw new IncogniaException("failed getting token", cause);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IncogniaException("interrupted while waiting for a token", e);
+      }
+    }
+
+    @Override
+    public CompletionStage<Token> getTokenAsync() {
+      return asyncTokenProvider.getTokenAsync();
+    }
+  }
+}
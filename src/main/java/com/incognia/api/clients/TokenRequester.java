@@ -7,10 +7,12 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 final class TokenRequester {
   private static final String TOKEN_REQUEST_BODY = "grant_type=client_credentials";
-  private static final String TOKEN_PATH = "api/v2/token";
+  static final String TOKEN_PATH = "api/v2/token";
 
   private final String clientId;
   private final String clientSecret;
@@ -23,19 +25,33 @@ final class TokenRequester {
   }
 
   Token requestToken() throws IncogniaException {
-    String clientIdSecret = clientId + ":" + clientSecret;
-    Map<String, String> headers =
-        Collections.singletonMap(
-            "Authorization",
-            "Basic "
-                + Base64.getEncoder()
-                    .encodeToString(clientIdSecret.getBytes(StandardCharsets.UTF_8)));
     TokenResponse tokenResponse =
         networkingClient.doPostFormUrlEncoded(
-            TOKEN_PATH, TOKEN_REQUEST_BODY, TokenResponse.class, headers);
+            TOKEN_PATH, TOKEN_REQUEST_BODY, TokenResponse.class, buildHeaders());
+    return toToken(tokenResponse);
+  }
+
+  CompletableFuture<Token> requestTokenAsync() {
+    return networkingClient
+        .doPostFormUrlEncodedAsync(
+            TOKEN_PATH, TOKEN_REQUEST_BODY, TokenResponse.class, buildHeaders())
+        .thenApply(TokenRequester::toToken);
+  }
+
+  private Map<String, String> buildHeaders() {
+    String clientIdSecret = clientId + ":" + clientSecret;
+    return Collections.singletonMap(
+        "Authorization",
+        "Basic "
+            + Base64.getEncoder().encodeToString(clientIdSecret.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static Token toToken(TokenResponse tokenResponse) {
+    long expiresIn = tokenResponse.getExpiresIn();
     return new Token(
         tokenResponse.getAccessToken(),
         tokenResponse.getTokenType(),
-        Instant.now().plusSeconds(tokenResponse.getExpiresIn()));
+        Instant.now().plusSeconds(expiresIn),
+        System.nanoTime() + TimeUnit.SECONDS.toNanos(expiresIn));
   }
 }
@@ -1,10 +1,12 @@
 package com.incognia.api.clients;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 @Data
 @AllArgsConstructor
+@JsonDeserialize(using = TokenResponseDeserializer.class)
 public class TokenResponse {
   private String accessToken;
   private long expiresIn;
@@ -0,0 +1,45 @@
+package com.incognia.api.clients;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+
+/** Reads a {@link TokenResponse} field by field, without introspecting it. */
+final class TokenResponseDeserializer extends StdDeserializer<TokenResponse> {
+  TokenResponseDeserializer() {
+    super(TokenResponse.class);
+  }
+
+  @Override
+  public TokenResponse deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+    String accessToken = null;
+    long expiresIn = 0;
+    String tokenType = null;
+    JsonToken t = p.currentToken();
+    if (t == JsonToken.START_OBJECT) {
+      t = p.nextToken();
+    } else if (t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT) {
+      return (TokenResponse) ctxt.handleUnexpectedToken(TokenResponse.class, p);
+    }
+    for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+      String name = p.currentName();
+      p.nextToken();
+      switch (name) {
+        case "access_token":
+          accessToken = p.getValueAsString();
+          break;
+        case "expires_in":
+          expiresIn = p.getValueAsLong();
+          break;
+        case "token_type":
+          tokenType = p.getValueAsString();
+          break;
+        default:
+          p.skipChildren();
+      }
+    }
+    return new TokenResponse(accessToken, expiresIn, tokenType);
+  }
+}
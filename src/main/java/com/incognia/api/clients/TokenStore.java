@@ -0,0 +1,31 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import com.incognia.common.exceptions.IncogniaException;
+
+/**
+ * Storage for access tokens shared between token providers, possibly in different processes, so
+ * that a valid token minted by one of them can be reused by the others instead of each requesting
+ * its own. Tokens are stored by key, which is the client id they were issued to.
+ *
+ * <p>Failures of the store are not fatal: token providers fall back to requesting tokens from the
+ * api when it cannot be read or written.
+ */
+public interface TokenStore {
+  /**
+   * @param key the client id the token was issued to
+   * @return the stored token, or null if there is none
+   */
+  Token get(String key) throws IncogniaException;
+
+  /**
+   * Atomically replaces the stored token if it is still {@code expected}.
+   *
+   * @param key the client id the token was issued to
+   * @param expected the token the caller last read, or null if it found none
+   * @param token the token to store
+   * @return false if the stored token changed since the caller read it, in which case nothing is
+   *     written
+   */
+  boolean compareAndSet(String key, Token expected, Token token) throws IncogniaException;
+}
@@ -0,0 +1,148 @@
+package com.incognia.api.clients;
+
+import com.incognia.common.Token;
+import com.incognia.common.exceptions.IncogniaException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Accesses a {@link TokenStore} treating its failures as misses, since an unavailable store only
+ * means that tokens are requested and used without being shared.
+ *
+ * <p>Stores may block on I/O, so they are accessed on a small pool of daemon threads rather than on
+ * the threads of the callers, of the http dispatcher or of the {@link InternalScheduler}. The
+ * {@link InMemoryTokenStore} never blocks and is accessed in place. Providers created with {@code
+ * useVirtualThreads} access stores on virtual threads instead, when the runtime supports them, with
+ * the same bound on concurrent accesses.
+ */
+final class TokenStores {
+  private static final int MAX_THREADS = 4;
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  private static final ExecutorService EXECUTOR = createExecutor();
+
+  private TokenStores() {}
+
+  /** Returns the executor stores are accessed on, per the {@code useVirtualThreads} option. */
+  static Executor executor(boolean useVirtualThreads) {
+    return useVirtualThreads && VirtualThreads.isSupported() ? VirtualExecutor.INSTANCE : EXECUTOR;
+  }
+
+  static CompletableFuture<Token> read(TokenStore tokenStore, String key) {
+    return read(tokenStore, key, EXECUTOR);
+  }
+
+  /**
+   * @return a future completed with the stored token, or null if there is no store, no token or it
+   *     cannot be read; it never completes exceptionally
+   */
+  static CompletableFuture<Token> read(TokenStore tokenStore, String key, Executor executor) {
+    if (tokenStore == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return access(
+        tokenStore,
+        executor,
+        () -> {
+          try {
+            return tokenStore.get(key);
+          } catch (IncogniaException | RuntimeException e) {
+            return null;
+          }
+        });
+  }
+
+  static CompletableFuture<Void> write(
+      TokenStore tokenStore, String key, Token expected, Token token) {
+    return write(tokenStore, key, expected, token, EXECUTOR);
+  }
+
+  /**
+   * Stores {@code token} unless the stored token changed since {@code expected} was read. Losing
+   * that race means another provider stored a token just as fresh, so either can be used.
+   *
+   * @return a future completed once the store was written or failed to be; it never completes
+   *     exceptionally
+   */
+  static CompletableFuture<Void> write(
+      TokenStore tokenStore, String key, Token expected, Token token, Executor executor) {
+    if (tokenStore == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return access(
+        tokenStore,
+        executor,
+        () -> {
+          try {
+            tokenStore.compareAndSet(key, expected, token);
+          } catch (IncogniaException | RuntimeException e) {
+            // the token is still used by the provider, it just is not shared
+          }
+          return null;
+        });
+  }
+
+  private static <T> CompletableFuture<T> access(
+      TokenStore tokenStore, Executor executor, Supplier<T> access) {
+    if (tokenStore instanceof InMemoryTokenStore) {
+      return CompletableFuture.completedFuture(access.get());
+    }
+    try {
+      return CompletableFuture.supplyAsync(access, executor);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  private static ExecutorService createExecutor() {
+    // bounded so that a slow store queues accesses instead of starting a thread for each of them;
+    // the threads stop when stores are idle, which is most of the time
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            MAX_THREADS,
+            MAX_THREADS,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "incognia-token-store-" + THREAD_COUNT.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Runs each access on a virtual thread of its own. Waiting for a permit parks the virtual thread
+   * rather than a platform one, so the bound needs no queue.
+   */
+  private static final class VirtualExecutor implements Executor {
+    private static final VirtualExecutor INSTANCE = new VirtualExecutor();
+
+    private final ExecutorService threads =
+        VirtualThreads.newThreadPerTaskExecutor("incognia-token-store");
+    private final Semaphore permits = new Semaphore(MAX_THREADS);
+
+    @Override
+    public void execute(Runnable command) {
+      threads.execute(
+          () -> {
+            permits.acquireUninterruptibly();
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.incognia.api.clients;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Access point to virtual threads. This is the Java 8 version, used when the library runs on a JVM
+ * older than 21. The multi-release jar ships a Java 21 version of this class under {@code
+ * META-INF/versions/21} that actually creates virtual threads.
+ */
+final class VirtualThreads {
+  private VirtualThreads() {}
+
+  static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * Without virtual threads, returns a cached pool of daemon platform threads named like the
+   * virtual ones, which also starts a thread for each task unless an idle one can be reused.
+   */
+  static ExecutorService newThreadPerTaskExecutor(String name) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newCachedThreadPool(
+        runnable -> {
+          Thread thread = new Thread(runnable, name + "-" + threadCount.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+}
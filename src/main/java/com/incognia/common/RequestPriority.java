@@ -0,0 +1,12 @@
+package com.incognia.common;
+
+/**
+ * Priority classes used to order requests when the client is overloaded, from the most to the least
+ * important. Requests of lower classes are delayed and shed first.
+ */
+public enum RequestPriority {
+  CRITICAL,
+  HIGH,
+  NORMAL,
+  LOW
+}
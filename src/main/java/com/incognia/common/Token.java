@@ -1,15 +1,55 @@
 package com.incognia.common;
 
+import java.time.Duration;
 import java.time.Instant;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.Value;
 
+/**
+ * An access token. Expiration checks use a {@link System#nanoTime()} deadline computed when the
+ * token is created, so they do not allocate and are not affected by wall-clock adjustments; {@code
+ * expiresAt} is kept for display and for sharing tokens between processes.
+ */
 @Value
 public class Token {
   String accessToken;
   String tokenType;
   Instant expiresAt;
+  @EqualsAndHashCode.Exclude @ToString.Exclude long expiresAtNanos;
+
+  public Token(String accessToken, String tokenType, Instant expiresAt) {
+    this(accessToken, tokenType, expiresAt, toNanoTime(expiresAt));
+  }
+
+  /**
+   * @param expiresAtNanos the {@link System#nanoTime()} value at which the token expires
+   */
+  public Token(String accessToken, String tokenType, Instant expiresAt, long expiresAtNanos) {
+    this.accessToken = accessToken;
+    this.tokenType = tokenType;
+    this.expiresAt = expiresAt;
+    this.expiresAtNanos = expiresAtNanos;
+  }
 
   public boolean isExpired() {
-    return !expiresAt.isAfter(Instant.now());
+    return remainingNanos() <= 0;
+  }
+
+  /** Returns the time left until the token expires, negative once it has expired. */
+  public long remainingNanos() {
+    return expiresAtNanos - System.nanoTime();
+  }
+
+  private static long toNanoTime(Instant expiresAt) {
+    Duration remaining = Duration.between(Instant.now(), expiresAt);
+    long remainingNanos;
+    try {
+      remainingNanos = remaining.toNanos();
+    } catch (ArithmeticException e) {
+      // halved so that adding the current nanoTime cannot overflow
+      remainingNanos = remaining.isNegative() ? Long.MIN_VALUE / 2 : Long.MAX_VALUE / 2;
+    }
+    return System.nanoTime() + remainingNanos;
   }
 }
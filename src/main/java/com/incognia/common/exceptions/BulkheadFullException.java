@@ -0,0 +1,7 @@
+package com.incognia.common.exceptions;
+
+public class BulkheadFullException extends IncogniaException {
+  public BulkheadFullException(String name) {
+    super(String.format("bulkhead for '%s' is full", name));
+  }
+}
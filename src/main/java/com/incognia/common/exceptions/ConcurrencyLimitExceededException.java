@@ -0,0 +1,7 @@
+package com.incognia.common.exceptions;
+
+public class ConcurrencyLimitExceededException extends IncogniaException {
+  public ConcurrencyLimitExceededException(int limit) {
+    super(String.format("concurrency limit of %d in-flight requests exceeded", limit));
+  }
+}
@@ -0,0 +1,9 @@
+package com.incognia.common.exceptions;
+
+import com.incognia.common.RequestPriority;
+
+public class RequestShedException extends IncogniaException {
+  public RequestShedException(RequestPriority priority) {
+    super(String.format("request with %s priority was shed", priority.name().toLowerCase()));
+  }
+}
@@ -0,0 +1,14 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class AdaptiveConcurrencyLimitOptions {
+  @Builder.Default int initialLimit = 20;
+  @Builder.Default int minLimit = 1;
+  @Builder.Default int maxLimit = 200;
+  @Builder.Default long latencyThresholdMillis = 1000L;
+  @Builder.Default double backoffRatio = 0.9;
+}
@@ -29,4 +29,17 @@ public class Asserts {
       throw new IllegalArgumentException(String.format("'%s' cannot be null", name));
     }
   }
+
+  /**
+   * Asserts that a number is greater than zero
+   *
+   * @param value the value to check.
+   * @param name the name of the parameter, used when creating the exception message.
+   * @throws IllegalArgumentException if the value is zero or negative
+   */
+  public static void assertPositive(long value, String name) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(String.format("'%s' must be positive", name));
+    }
+  }
 }
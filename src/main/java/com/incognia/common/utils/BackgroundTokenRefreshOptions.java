@@ -0,0 +1,12 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class BackgroundTokenRefreshOptions {
+  @Builder.Default double minLifetimeRatio = 0.70;
+  @Builder.Default double maxLifetimeRatio = 0.85;
+  @Builder.Default long retryDelayMillis = 5000L;
+}
@@ -0,0 +1,11 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class BulkheadOptions {
+  @Builder.Default int maxConcurrentCalls = 10;
+  @Builder.Default int maxQueuedCalls = 50;
+}
@@ -0,0 +1,20 @@
+package com.incognia.common.utils;
+
+import java.util.concurrent.CompletableFuture;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class CompletableFutures {
+  /**
+   * Creates a future that is already completed with the given exception. Equivalent to {@code
+   * CompletableFuture.failedFuture}, which is not available in Java 8.
+   *
+   * @param throwable the exception used to complete the future.
+   * @return the failed future
+   */
+  public static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(throwable);
+    return future;
+  }
+}
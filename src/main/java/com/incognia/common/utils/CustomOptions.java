@@ -1,14 +1,40 @@
 package com.incognia.common.utils;
 
+import com.incognia.api.clients.AsyncTokenProvider;
+import com.incognia.api.clients.JsonCodec;
+import com.incognia.api.clients.TokenManager;
 import com.incognia.api.clients.TokenProvider;
+import com.incognia.api.clients.TokenStore;
+import java.util.concurrent.ExecutorService;
 import lombok.Builder;
 import lombok.Value;
+import okhttp3.OkHttpClient;
 
 @Value
 @Builder(toBuilder = true)
 public class CustomOptions {
   @Builder.Default long timeoutMillis = 10000L;
+  @Builder.Default long tokenTimeoutMillis = 5000L;
   @Builder.Default int maxConnections = 5;
   @Builder.Default long keepAliveSeconds = 300;
+  @Builder.Default int maxRequests = 64;
+  @Builder.Default int maxRequestsPerHost = 5;
+  ExecutorService dispatcherExecutor;
   TokenProvider tokenProvider;
+  AsyncTokenProvider asyncTokenProvider;
+  boolean useVirtualThreads;
+  boolean generatedJsonAccessors;
+  JsonCodec jsonCodec;
+  AdaptiveConcurrencyLimitOptions adaptiveConcurrencyLimit;
+  BulkheadOptions signupsBulkhead;
+  BulkheadOptions transactionsBulkhead;
+  BulkheadOptions feedbacksBulkhead;
+  BulkheadOptions tokenBulkhead;
+  HedgingOptions loginHedging;
+  PrioritySchedulingOptions priorityScheduling;
+  BackgroundTokenRefreshOptions backgroundTokenRefresh;
+  TokenStore tokenStore;
+  TokenManager tokenManager;
+  OkHttpClient httpClient;
+  InstanceEvictionOptions instanceEviction;
 }
@@ -0,0 +1,13 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class HedgingOptions {
+  @Builder.Default double percentile = 0.95;
+  @Builder.Default int sampleSize = 200;
+  @Builder.Default int minSamples = 20;
+  @Builder.Default long minDelayMillis = 10L;
+}
@@ -0,0 +1,11 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class InstanceEvictionOptions {
+  Long maxIdleMillis;
+  Integer maxInstances;
+}
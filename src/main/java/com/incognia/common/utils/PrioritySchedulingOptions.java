@@ -0,0 +1,13 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class PrioritySchedulingOptions {
+  @Builder.Default int maxInFlight = 64;
+  @Builder.Default int maxQueued = 256;
+  @Builder.Default long maxQueueTimeMillis = 1000L;
+  @Builder.Default int reservedInFlightPerPriority = 0;
+}
@@ -0,0 +1,10 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class RequestOptions {
+  Long timeoutMillis;
+}
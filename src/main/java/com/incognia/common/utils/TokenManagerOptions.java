@@ -0,0 +1,12 @@
+package com.incognia.common.utils;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class TokenManagerOptions {
+  @Builder.Default long tickMillis = 1000L;
+  @Builder.Default int wheelSize = 512;
+  @Builder.Default int workerThreads = 2;
+}
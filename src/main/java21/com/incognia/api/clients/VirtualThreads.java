@@ -0,0 +1,20 @@
+package com.incognia.api.clients;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access point to virtual threads. This is the Java 21 version, packaged under {@code
+ * META-INF/versions/21} of the multi-release jar.
+ */
+final class VirtualThreads {
+  private VirtualThreads() {}
+
+  static boolean isSupported() {
+    return true;
+  }
+
+  static ExecutorService newThreadPerTaskExecutor(String name) {
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+  }
+}
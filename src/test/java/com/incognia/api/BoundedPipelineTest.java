@@ -0,0 +1,275 @@
+package com.incognia.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.incognia.common.exceptions.IncogniaException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BoundedPipelineTest {
+  private final Map<Integer, String> assessments = new ConcurrentHashMap<>();
+  private final Map<Integer, Throwable> errors = new ConcurrentHashMap<>();
+  private final AssessmentListener<Integer, String> listener =
+      new AssessmentListener<Integer, String>() {
+        @Override
+        public void onAssessment(Integer request, String assessment) {
+          assessments.put(request, assessment);
+        }
+
+        @Override
+        public void onError(Integer request, Throwable throwable) {
+          errors.put(request, throwable);
+        }
+      };
+
+  @Test
+  void testStart_shouldNeverExceedMaxInFlightAndPullLazily() {
+    List<Integer> requests = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    List<Integer> pulled = new CopyOnWriteArrayList<>();
+    Iterator<Integer> source = new RecordingIterator(requests.iterator(), pulled);
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+
+    CompletableFuture<Void> completion =
+        new BoundedPipeline<Integer, String>(
+                source,
+                3,
+                request -> {
+                  CompletableFuture<String> future = new CompletableFuture<>();
+                  pending.add(future);
+                  return future;
+                },
+                listener)
+            .start();
+
+    assertThat(pulled).containsExactly(0, 1, 2);
+
+    pending.get(1).complete("one");
+
+    assertThat(pulled).containsExactly(0, 1, 2, 3);
+    assertThat(assessments).containsOnlyKeys(1);
+
+    for (int i = 0; i < requests.size(); i++) {
+      pending.get(i).complete("assessment-" + i);
+    }
+
+    assertThat(completion).isCompleted();
+    assertThat(pulled).isEqualTo(requests);
+    assertThat(assessments).hasSize(requests.size());
+    assertThat(errors).isEmpty();
+  }
+
+  @Test
+  void testStart_whenRequestsFail_shouldNotifyListenerAndKeepGoing() {
+    IncogniaException exception = new IncogniaException("network call failed");
+
+    CompletableFuture<Void> completion =
+        new BoundedPipeline<Integer, String>(
+                Arrays.asList(0, 1, 2).iterator(),
+                2,
+                request -> {
+                  if (request == 0) {
+                    throw new IllegalArgumentException("'account id' cannot be empty");
+                  }
+                  CompletableFuture<String> future = new CompletableFuture<>();
+                  if (request == 1) {
+                    future.completeExceptionally(exception);
+                  } else {
+                    future.complete("two");
+                  }
+                  return future;
+                },
+                listener)
+            .start();
+
+    assertThat(completion).isCompleted();
+    assertThat(errors.get(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThat(errors.get(1)).isSameAs(exception);
+    assertThat(assessments).containsEntry(2, "two");
+  }
+
+  @Test
+  void testStart_whenSourceIsEmpty_shouldCompleteImmediately() {
+    CompletableFuture<Void> completion =
+        new BoundedPipeline<Integer, String>(
+                Collections.emptyIterator(), 2, request -> new CompletableFuture<>(), listener)
+            .start();
+
+    assertThat(completion).isCompleted();
+  }
+
+  @Test
+  void testStart_whenSourceThrows_shouldCompleteExceptionally() {
+    Iterator<Integer> source =
+        new Iterator<Integer>() {
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public Integer next() {
+            throw new IllegalStateException("broken source");
+          }
+        };
+
+    CompletableFuture<Void> completion =
+        new BoundedPipeline<Integer, String>(
+                source, 2, request -> new CompletableFuture<>(), listener)
+            .start();
+
+    assertThat(completion).isCompletedExceptionally();
+  }
+
+  @Test
+  void testStart_whenSourceThrowsWithRequestsInFlight_shouldCompleteAfterTheirCallbacks() {
+    Iterator<Integer> source =
+        new Iterator<Integer>() {
+          private int next;
+
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public Integer next() {
+            if (next == 2) {
+              throw new IllegalStateException("broken source");
+            }
+            return next++;
+          }
+        };
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+    AtomicReference<CompletableFuture<Void>> completion = new AtomicReference<>();
+    List<Integer> callbacksAfterCompletion = new CopyOnWriteArrayList<>();
+
+    completion.set(
+        new BoundedPipeline<Integer, String>(
+                source,
+                3,
+                request -> {
+                  CompletableFuture<String> future = new CompletableFuture<>();
+                  pending.add(future);
+                  return future;
+                },
+                new AssessmentListener<Integer, String>() {
+                  @Override
+                  public void onAssessment(Integer request, String assessment) {
+                    if (completion.get().isDone()) {
+                      callbacksAfterCompletion.add(request);
+                    }
+                    assessments.put(request, assessment);
+                  }
+
+                  @Override
+                  public void onError(Integer request, Throwable throwable) {
+                    errors.put(request, throwable);
+                  }
+                })
+            .start());
+
+    assertThat(completion.get()).isNotDone();
+
+    pending.get(0).complete("zero");
+
+    assertThat(completion.get()).isNotDone();
+
+    pending.get(1).complete("one");
+
+    assertThat(completion.get())
+        .failsWithin(Duration.ZERO)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(IllegalStateException.class);
+    assertThat(pending).hasSize(2);
+    assertThat(assessments).containsOnlyKeys(0, 1);
+    assertThat(callbacksAfterCompletion).isEmpty();
+  }
+
+  @Test
+  void testStart_whenListenerThrows_shouldStopPullingAndCompleteAfterInFlightCallbacks() {
+    List<Integer> pulled = new CopyOnWriteArrayList<>();
+    Iterator<Integer> source = new RecordingIterator(Arrays.asList(0, 1, 2, 3).iterator(), pulled);
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+    IllegalStateException listenerException = new IllegalStateException("listener failed");
+    AtomicReference<CompletableFuture<Void>> completion = new AtomicReference<>();
+    List<Integer> callbacksAfterCompletion = new CopyOnWriteArrayList<>();
+
+    completion.set(
+        new BoundedPipeline<Integer, String>(
+                source,
+                2,
+                request -> {
+                  CompletableFuture<String> future = new CompletableFuture<>();
+                  pending.add(future);
+                  return future;
+                },
+                new AssessmentListener<Integer, String>() {
+                  @Override
+                  public void onAssessment(Integer request, String assessment) {
+                    if (completion.get().isDone()) {
+                      callbacksAfterCompletion.add(request);
+                    }
+                    assessments.put(request, assessment);
+                    if (request == 0) {
+                      throw listenerException;
+                    }
+                  }
+
+                  @Override
+                  public void onError(Integer request, Throwable throwable) {
+                    errors.put(request, throwable);
+                  }
+                })
+            .start());
+
+    pending.get(0).complete("zero");
+
+    assertThat(completion.get()).isNotDone();
+    assertThat(pulled).containsExactly(0, 1);
+
+    pending.get(1).complete("one");
+
+    assertThat(completion.get())
+        .failsWithin(Duration.ZERO)
+        .withThrowableOfType(ExecutionException.class)
+        .withCause(listenerException);
+    assertThat(pulled).containsExactly(0, 1);
+    assertThat(assessments).containsOnlyKeys(0, 1);
+    assertThat(callbacksAfterCompletion).isEmpty();
+  }
+
+  private static class RecordingIterator implements Iterator<Integer> {
+    private final Iterator<Integer> delegate;
+    private final List<Integer> pulled;
+
+    RecordingIterator(Iterator<Integer> delegate, List<Integer> pulled) {
+      this.delegate = delegate;
+      this.pulled = pulled;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public Integer next() {
+      Integer value = delegate.next();
+      pulled.add(value);
+      return value;
+    }
+  }
+}
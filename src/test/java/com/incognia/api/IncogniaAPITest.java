@@ -5,13 +5,21 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incognia.api.clients.AsyncTokenProvider;
+import com.incognia.api.clients.JacksonJsonCodec;
+import com.incognia.api.clients.JsonCodec;
+import com.incognia.api.clients.ObjectMapperFactory;
 import com.incognia.api.clients.TokenAwareDispatcher;
 import com.incognia.api.clients.TokenProvider;
+import com.incognia.api.clients.TokenResponse;
 import com.incognia.common.Address;
 import com.incognia.common.Coordinates;
 import com.incognia.common.FinancialAccount;
@@ -24,13 +32,18 @@ import com.incognia.common.ReasonSource;
 import com.incognia.common.StructuredAddress;
 import com.incognia.common.Token;
 import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.BackgroundTokenRefreshOptions;
+import com.incognia.common.utils.BulkheadOptions;
 import com.incognia.common.utils.ClientCredentials;
 import com.incognia.common.utils.CustomOptions;
+import com.incognia.common.utils.InstanceEvictionOptions;
+import com.incognia.common.utils.RequestOptions;
 import com.incognia.feedback.FeedbackEvent;
 import com.incognia.feedback.FeedbackIdentifiers;
 import com.incognia.feedback.PostFeedbackRequestBody;
 import com.incognia.fixtures.AddressFixture;
 import com.incognia.fixtures.TokenCreationFixture;
+import com.incognia.onboarding.PostSignupRequestBody;
 import com.incognia.onboarding.RegisterSignupRequest;
 import com.incognia.onboarding.RegisterWebSignupRequest;
 import com.incognia.onboarding.SignupAssessment;
@@ -49,6 +62,7 @@ import com.incognia.transaction.payment.PaymentValue;
 import com.incognia.transaction.payment.PixKey;
 import com.incognia.transaction.payment.RegisterPaymentRequest;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -57,15 +71,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.SneakyThrows;
 import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -87,6 +107,7 @@ class IncogniaAPITest {
   private MockWebServer mockServer;
   private IncogniaAPI client;
   private IncogniaAPI clientWithLowTimeout;
+  private final AtomicLong nanos = new AtomicLong();
 
   @BeforeEach
   void setUp() throws Exception {
@@ -111,6 +132,7 @@ class IncogniaAPITest {
   void tearDown() throws Exception {
     mockServer.shutdown();
     resetIncogniaApiInstances();
+    IncogniaAPI.nanoClock = System::nanoTime;
   }
 
   @Test
@@ -187,6 +209,175 @@ class IncogniaAPITest {
     assertThrows(IllegalStateException.class, () -> IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET));
   }
 
+  @Test
+  void testInit_whenMaxInstancesIsExceeded_shouldEvictTheLeastRecentlyUsedInstance() {
+    CustomOptions options =
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxInstances(2).build())
+            .build();
+    IncogniaAPI.init(CLIENT_ID, CLIENT_SECRET, options);
+    IncogniaAPI.init(DIFFERENT_CLIENT_ID, DIFFERENT_CLIENT_SECRET, options);
+    IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET);
+
+    IncogniaAPI.init("third-client-id", "third-client-secret", options);
+
+    assertThat(IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET)).isNotNull();
+    assertThrows(
+        IllegalStateException.class,
+        () -> IncogniaAPI.instance(DIFFERENT_CLIENT_ID, DIFFERENT_CLIENT_SECRET));
+  }
+
+  @Test
+  void testInit_whenInstanceIsIdleForTooLong_shouldEvictIt() {
+    IncogniaAPI.nanoClock = nanos::get;
+    IncogniaAPI.init(
+        CLIENT_ID,
+        CLIENT_SECRET,
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxIdleMillis(10L).build())
+            .build());
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(11));
+
+    IncogniaAPI.init(
+        DIFFERENT_CLIENT_ID,
+        DIFFERENT_CLIENT_SECRET,
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxInstances(10).build())
+            .build());
+
+    assertThrows(IllegalStateException.class, () -> IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET));
+  }
+
+  @Test
+  void testInit_whenInstanceIsIdleForLessThanMaxIdle_shouldKeepIt() {
+    IncogniaAPI.nanoClock = nanos::get;
+    IncogniaAPI api =
+        IncogniaAPI.init(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder()
+                .instanceEviction(InstanceEvictionOptions.builder().maxIdleMillis(10L).build())
+                .build());
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+
+    IncogniaAPI.init(
+        DIFFERENT_CLIENT_ID,
+        DIFFERENT_CLIENT_SECRET,
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxInstances(10).build())
+            .build());
+
+    assertThat(IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET)).isSameAs(api);
+  }
+
+  @Test
+  void testInit_whenIdleInstanceIsUsedForRequests_shouldNotEvictIt() throws Exception {
+    dispatcher.setExpectedRequestToken("request-token-web-signup");
+    mockServer.setDispatcher(dispatcher);
+    IncogniaAPI.nanoClock = nanos::get;
+    IncogniaAPI api =
+        putInstance(
+            new IncogniaAPI(
+                CLIENT_ID,
+                CLIENT_SECRET,
+                CustomOptions.builder()
+                    .instanceEviction(InstanceEvictionOptions.builder().maxIdleMillis(200L).build())
+                    .build(),
+                mockServer.url("").toString()));
+
+    CustomOptions otherOptions =
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxInstances(10).build())
+            .build();
+    IncogniaAPI.init(DIFFERENT_CLIENT_ID, DIFFERENT_CLIENT_SECRET, otherOptions);
+
+    for (int i = 0; i < 5; i++) {
+      nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+      api.registerWebSignup(
+          RegisterWebSignupRequest.builder().requestToken("request-token-web-signup").build());
+    }
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(150));
+    IncogniaAPI.init("third-client-id", "third-client-secret", otherOptions);
+
+    assertThat(IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET)).isSameAs(api);
+  }
+
+  @Test
+  void testInit_whenInstanceIsEvicted_shouldCancelItsBackgroundTokenRefresh() throws Exception {
+    dispatcher.setExpectedRequestToken("request-token-web-signup");
+    mockServer.setDispatcher(dispatcher);
+    IncogniaAPI.nanoClock = nanos::get;
+    IncogniaAPI api =
+        putInstance(
+            new IncogniaAPI(
+                CLIENT_ID,
+                CLIENT_SECRET,
+                CustomOptions.builder()
+                    .backgroundTokenRefresh(BackgroundTokenRefreshOptions.builder().build())
+                    .instanceEviction(InstanceEvictionOptions.builder().maxIdleMillis(10L).build())
+                    .build(),
+                mockServer.url("").toString()));
+    api.registerWebSignup(
+        RegisterWebSignupRequest.builder().requestToken("request-token-web-signup").build());
+    AtomicReference<?> scheduledRefresh = scheduledRefresh(api);
+    assertThat(scheduledRefresh.get()).isNotNull();
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(11));
+
+    IncogniaAPI.init(
+        DIFFERENT_CLIENT_ID,
+        DIFFERENT_CLIENT_SECRET,
+        CustomOptions.builder()
+            .instanceEviction(InstanceEvictionOptions.builder().maxInstances(10).build())
+            .build());
+
+    assertThrows(IllegalStateException.class, () -> IncogniaAPI.instance(CLIENT_ID, CLIENT_SECRET));
+    assertThat(scheduledRefresh.get()).isNull();
+  }
+
+  @Test
+  void
+      testInit_whenHttpClientIsProvidedWithDispatcherOptions_shouldThrowIllegalArgumentException() {
+    CustomOptions options =
+        CustomOptions.builder().httpClient(new OkHttpClient()).maxRequests(10).build();
+
+    assertThatThrownBy(() -> IncogniaAPI.init(CLIENT_ID, CLIENT_SECRET, options))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage(
+            "'http client' cannot be combined with the connection, timeout and dispatcher options");
+  }
+
+  @Test
+  void testUpdateDispatcherLimits_whenHttpClientIsShared_shouldThrowIllegalStateException() {
+    IncogniaAPI api =
+        IncogniaAPI.init(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().httpClient(new OkHttpClient()).build());
+
+    assertThatThrownBy(() -> api.updateDispatcherLimits(100, 50))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testInit_whenHttpClientIsProvided_shouldShareIt() throws Exception {
+    OkHttpClient sharedHttpClient = new OkHttpClient();
+    CustomOptions options = CustomOptions.builder().httpClient(sharedHttpClient).build();
+
+    IncogniaAPI instance1 = IncogniaAPI.init(CLIENT_ID, CLIENT_SECRET, options);
+    IncogniaAPI instance2 = IncogniaAPI.init(DIFFERENT_CLIENT_ID, DIFFERENT_CLIENT_SECRET, options);
+
+    Field httpClientField = IncogniaAPI.class.getDeclaredField("httpClient");
+    httpClientField.setAccessible(true);
+    assertThat(httpClientField.get(instance1)).isSameAs(sharedHttpClient);
+    assertThat(httpClientField.get(instance2)).isSameAs(sharedHttpClient);
+    Field tokenHttpClientField = IncogniaAPI.class.getDeclaredField("tokenHttpClient");
+    tokenHttpClientField.setAccessible(true);
+    OkHttpClient tokenHttpClient = (OkHttpClient) tokenHttpClientField.get(instance1);
+    assertThat(tokenHttpClientField.get(instance2)).isSameAs(tokenHttpClient);
+    assertThat(tokenHttpClient.dispatcher()).isNotSameAs(sharedHttpClient.dispatcher());
+    assertThat(tokenHttpClient.connectionPool()).isSameAs(sharedHttpClient.connectionPool());
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   void testInit_shouldCreateOkHttpWithRightParameters() {
@@ -198,7 +389,9 @@ class IncogniaAPITest {
                 (mock, context) -> {
                   doReturn(mock).when(mock).callTimeout(anyLong(), any());
                   doReturn(mock).when(mock).connectionPool(any());
-                  doReturn(mock(OkHttpClient.class)).when(mock).build();
+                  OkHttpClient httpClient = mock(OkHttpClient.class);
+                  doReturn(mock).when(httpClient).newBuilder();
+                  doReturn(httpClient).when(mock).build();
                 });
         MockedConstruction<ConnectionPool> ignored =
             mockConstruction(
@@ -237,7 +430,9 @@ class IncogniaAPITest {
                 (mock, context) -> {
                   doReturn(mock).when(mock).callTimeout(anyLong(), any());
                   doReturn(mock).when(mock).connectionPool(any());
-                  doReturn(mock(OkHttpClient.class)).when(mock).build();
+                  OkHttpClient httpClient = mock(OkHttpClient.class);
+                  doReturn(mock).when(httpClient).newBuilder();
+                  doReturn(httpClient).when(mock).build();
                 });
         MockedConstruction<ConnectionPool> ignored =
             mockConstruction(
@@ -253,6 +448,24 @@ class IncogniaAPITest {
     }
   }
 
+  @Test
+  void testUpdateDispatcherLimits_shouldResizeTheDispatcher() throws Exception {
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().maxRequests(10).maxRequestsPerHost(2).build(),
+            mockServer.url("").toString());
+
+    api.updateDispatcherLimits(100, 50);
+
+    Field httpClientField = IncogniaAPI.class.getDeclaredField("httpClient");
+    httpClientField.setAccessible(true);
+    OkHttpClient httpClient = (OkHttpClient) httpClientField.get(api);
+    assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(100);
+    assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(50);
+  }
+
   @Test
   void testConstructor_whenCustomTokenProviderIsProvided_shouldUseIt() throws Exception {
     TokenProvider customTokenProvider = mock(TokenProvider.class);
@@ -277,6 +490,114 @@ class IncogniaAPITest {
     assertThat(dispatcher.getTokenRequestCount()).isZero();
   }
 
+  @Test
+  void testConstructor_whenBothTokenProvidersAreProvided_shouldThrowIllegalArgumentException() {
+    CustomOptions options =
+        CustomOptions.builder()
+            .tokenProvider(mock(TokenProvider.class))
+            .asyncTokenProvider(mock(AsyncTokenProvider.class))
+            .build();
+
+    assertThatThrownBy(
+            () -> new IncogniaAPI(CLIENT_ID, CLIENT_SECRET, options, mockServer.url("").toString()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'token provider' and 'async token provider' cannot both be set");
+  }
+
+  @Test
+  void testWarmUp_shouldRequestTheTokenBeforeTheFirstRequest() throws Exception {
+    dispatcher.setExpectedRequestToken("request-token-web-signup");
+    mockServer.setDispatcher(dispatcher);
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().maxConnections(2).build(),
+            mockServer.url("").toString());
+
+    int openConnections = api.warmUp();
+
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(1);
+    assertThat(mockServer.getRequestCount()).isEqualTo(3);
+    // requests that finish before the others start reuse their connections
+    assertThat(openConnections).isBetween(1, 2);
+
+    api.registerWebSignup(
+        RegisterWebSignupRequest.builder().requestToken("request-token-web-signup").build());
+
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void
+      testConstructor_whenGeneratedJsonAccessorsAreNotAvailable_shouldThrowIllegalStateException() {
+    CustomOptions options = CustomOptions.builder().generatedJsonAccessors(true).build();
+
+    assertThatThrownBy(
+            () -> new IncogniaAPI(CLIENT_ID, CLIENT_SECRET, options, mockServer.url("").toString()))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage(
+            "generated json accessors require jackson-module-blackbird or jackson-module-afterburner on the classpath");
+  }
+
+  @Test
+  void testConstructor_whenJsonCodecIsProvided_shouldUseIt() throws Exception {
+    JsonCodec jsonCodec = spy(JsonCodecs.jackson(new ObjectMapper()));
+    dispatcher.setExpectedRequestToken("request-token-web-signup");
+    mockServer.setDispatcher(dispatcher);
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().jsonCodec(jsonCodec).build(),
+            mockServer.url("").toString());
+
+    SignupAssessment assessment =
+        api.registerWebSignup(
+            RegisterWebSignupRequest.builder().requestToken("request-token-web-signup").build());
+
+    assertThat(assessment).isNotNull();
+    verify(jsonCodec).write(any(RegisterWebSignupRequest.class), any());
+    verify(jsonCodec).read(any(), eq(TokenResponse.class));
+    verify(jsonCodec).read(any(), eq(SignupAssessment.class));
+  }
+
+  @Test
+  void testConstructor_whenCustomJsonCodecIsProvided_shouldHandItTheRequestBodies()
+      throws Exception {
+    JsonCodec jsonCodec = spy(new JacksonJsonCodec(ObjectMapperFactory.OBJECT_MAPPER));
+    dispatcher.setExpectedRequestToken("request-token-web-signup");
+    mockServer.setDispatcher(dispatcher);
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().jsonCodec(jsonCodec).build(),
+            mockServer.url("").toString());
+
+    SignupAssessment assessment =
+        api.registerWebSignup(
+            RegisterWebSignupRequest.builder().requestToken("request-token-web-signup").build());
+
+    assertThat(assessment).isNotNull();
+    verify(jsonCodec).write(any(PostSignupRequestBody.class), any());
+  }
+
+  @Test
+  void
+      testConstructor_whenJsonCodecAndGeneratedAccessorsAreSet_shouldThrowIllegalArgumentException() {
+    CustomOptions options =
+        CustomOptions.builder()
+            .jsonCodec(JsonCodecs.defaultCodec())
+            .generatedJsonAccessors(true)
+            .build();
+
+    assertThatThrownBy(
+            () -> new IncogniaAPI(CLIENT_ID, CLIENT_SECRET, options, mockServer.url("").toString()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'json codec' and 'generated json accessors' cannot both be set");
+  }
+
   @Test
   void testConstructor_whenCustomTokenProviderIsNotProvided_shouldUseDefaultTokenProvider()
       throws Exception {
@@ -1168,6 +1489,194 @@ class IncogniaAPITest {
         .hasMessage("'account id' cannot be empty");
   }
 
+  @Test
+  @DisplayName("should complete the future with the expected login transaction response")
+  @SneakyThrows
+  void testRegisterLoginAsync_whenDataIsValid() {
+    String requestToken = "request-token";
+    String accountId = "account-id";
+    String policyId = "policy-id";
+
+    dispatcher.setExpectedTransactionRequestBody(
+        PostTransactionRequestBody.builder()
+            .requestToken(requestToken)
+            .accountId(accountId)
+            .type("login")
+            .addresses(null)
+            .paymentMethods(null)
+            .policyId(policyId)
+            .customProperties(null)
+            .build());
+    mockServer.setDispatcher(dispatcher);
+    RegisterLoginRequest loginRequest =
+        RegisterLoginRequest.builder()
+            .requestToken(requestToken)
+            .accountId(accountId)
+            .policyId(policyId)
+            .build();
+
+    TransactionAssessment transactionAssessment =
+        client.registerLoginAsync(loginRequest).get(5, TimeUnit.SECONDS);
+
+    assertTransactionAssessment(transactionAssessment);
+  }
+
+  @Test
+  @DisplayName("should complete the future exceptionally if exceeds timeout")
+  void testRegisterPaymentAsync_whenReachesTheTimeout() {
+    mockServer.setDispatcher(dispatcher);
+    RegisterPaymentRequest paymentRequest =
+        RegisterPaymentRequest.builder()
+            .requestToken("request-token")
+            .accountId("account-id")
+            .addresses(Collections.emptyMap())
+            .build();
+
+    assertThatThrownBy(
+            () ->
+                clientWithLowTimeout.registerPaymentAsync(paymentRequest).get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .cause()
+        .isInstanceOf(IncogniaException.class)
+        .hasMessage("network call timeout");
+  }
+
+  @Test
+  @DisplayName("should reject a request timeout that is not positive")
+  void testRegisterPayment_whenRequestTimeoutIsNotPositive() {
+    RegisterPaymentRequest paymentRequest =
+        RegisterPaymentRequest.builder()
+            .requestToken("request-token")
+            .accountId("account-id")
+            .addresses(Collections.emptyMap())
+            .build();
+
+    assertThatThrownBy(
+            () ->
+                client.registerPayment(
+                    paymentRequest, RequestOptions.builder().timeoutMillis(0L).build()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'timeout millis' must be positive");
+  }
+
+  @Test
+  @DisplayName("should complete the future when the feedback is registered")
+  @SneakyThrows
+  void testRegisterFeedbackAsync_whenDataIsValid() {
+    String accountId = "account-id";
+    Instant timestamp = Instant.now();
+
+    dispatcher.setExpectedFeedbackRequestBody(
+        PostFeedbackRequestBody.builder()
+            .accountId(accountId)
+            .event(FeedbackEvent.ACCOUNT_TAKEOVER)
+            .timestamp(timestamp.toEpochMilli())
+            .build());
+    mockServer.setDispatcher(dispatcher);
+
+    client
+        .registerFeedbackAsync(
+            FeedbackEvent.ACCOUNT_TAKEOVER,
+            timestamp,
+            FeedbackIdentifiers.builder().accountId(accountId).build())
+        .get(5, TimeUnit.SECONDS);
+
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("should run async calls on virtual threads when they are requested and supported")
+  @SneakyThrows
+  void testRegisterFeedbackAsync_whenUsingVirtualThreads() {
+    mockServer.enqueue(new MockResponse().setResponseCode(200).setBody(TOKEN_RESPONSE));
+    // delayed so the thread is captured by the dispatcher completing the call, not by this one
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder().useVirtualThreads(true).build(),
+            mockServer.url("").toString());
+
+    Thread dispatcherThread =
+        api.registerFeedbackAsync(
+                FeedbackEvent.ACCOUNT_TAKEOVER,
+                Instant.now(),
+                FeedbackIdentifiers.builder().accountId("account-id").build())
+            .thenApply(ignored -> Thread.currentThread())
+            .get(5, TimeUnit.SECONDS);
+
+    mockServer.takeRequest(); // token request
+    assertThat(mockServer.takeRequest().getPath()).startsWith("/api/v2/feedbacks");
+    assertThat(dispatcherThread).isNotSameAs(Thread.currentThread());
+    String javaVersion = System.getProperty("java.specification.version");
+    if (Integer.parseInt(javaVersion.replaceFirst("^1\\.", "")) < 21) {
+      // before Java 21 the option falls back to platform threads
+      return;
+    }
+    Method isVirtual = Thread.class.getMethod("isVirtual");
+    assertThat(isVirtual.invoke(dispatcherThread)).isEqualTo(true);
+  }
+
+  @Test
+  @DisplayName("should not delay payments behind a burst of feedbacks")
+  @SneakyThrows
+  void testRegisterPaymentAsync_whenFeedbacksSaturateTheirBulkhead_shouldNotBeDelayed() {
+    CountDownLatch releaseFeedbacks = new CountDownLatch(1);
+    mockServer.setDispatcher(
+        new Dispatcher() {
+          @SneakyThrows
+          @NotNull
+          @Override
+          public MockResponse dispatch(@NotNull RecordedRequest request) {
+            if (request.getPath().startsWith("/api/v2/feedbacks")) {
+              releaseFeedbacks.await(10, TimeUnit.SECONDS);
+              return new MockResponse().setResponseCode(200);
+            }
+            if (request.getPath().startsWith("/api/v2/authentication/transactions")) {
+              return new MockResponse().setResponseCode(200).setBody(TRANSACTION_RESPONSE);
+            }
+            return new MockResponse().setResponseCode(200).setBody(TOKEN_RESPONSE);
+          }
+        });
+    IncogniaAPI api =
+        new IncogniaAPI(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            CustomOptions.builder()
+                .feedbacksBulkhead(BulkheadOptions.builder().build())
+                .transactionsBulkhead(BulkheadOptions.builder().build())
+                .build(),
+            mockServer.url("").toString());
+    List<CompletableFuture<Void>> feedbacks = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < 20; i++) {
+        feedbacks.add(
+            api.registerFeedbackAsync(
+                FeedbackEvent.ACCOUNT_TAKEOVER,
+                Instant.now(),
+                FeedbackIdentifiers.builder().accountId("account-id").build()));
+      }
+
+      TransactionAssessment assessment =
+          api.registerPaymentAsync(
+                  RegisterPaymentRequest.builder()
+                      .requestToken("request-token")
+                      .accountId("account-id")
+                      .build())
+              .get(3, TimeUnit.SECONDS);
+
+      assertThat(assessment.getRiskAssessment()).isEqualTo(Assessment.LOW_RISK);
+    } finally {
+      releaseFeedbacks.countDown();
+    }
+    for (CompletableFuture<Void> feedback : feedbacks) {
+      feedback.get(5, TimeUnit.SECONDS);
+    }
+  }
+
   private static final String TOKEN_RESPONSE =
       "{\"access_token\": \"test-token\", \"expires_in\": 300, \"token_type\": \"Bearer\"}";
   private static final String SIGNUP_RESPONSE =
@@ -1340,6 +1849,26 @@ class IncogniaAPITest {
     return signalsMap;
   }
 
+  @SuppressWarnings("unchecked")
+  private IncogniaAPI putInstance(IncogniaAPI api) throws Exception {
+    Field field = IncogniaAPI.class.getDeclaredField("INSTANCES");
+    field.setAccessible(true);
+    ((ConcurrentHashMap<ClientCredentials, IncogniaAPI>) field.get(null))
+        .put(
+            ClientCredentials.builder().clientId(CLIENT_ID).clientSecret(CLIENT_SECRET).build(),
+            api);
+    return api;
+  }
+
+  private static AtomicReference<?> scheduledRefresh(IncogniaAPI api) throws Exception {
+    Field providerField = IncogniaAPI.class.getDeclaredField("autoRefreshTokenProvider");
+    providerField.setAccessible(true);
+    Object provider = providerField.get(api);
+    Field scheduledRefreshField = provider.getClass().getDeclaredField("scheduledRefresh");
+    scheduledRefreshField.setAccessible(true);
+    return (AtomicReference<?>) scheduledRefreshField.get(provider);
+  }
+
   private static void resetIncogniaApiInstances()
       throws NoSuchFieldException, IllegalAccessException {
     Field field = IncogniaAPI.class.getDeclaredField("INSTANCES");
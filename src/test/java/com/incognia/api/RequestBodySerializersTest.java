@@ -0,0 +1,424 @@
+package com.incognia.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.incognia.api.clients.ObjectMapperFactory;
+import com.incognia.common.AdditionalLocation;
+import com.incognia.common.Address;
+import com.incognia.common.Coordinates;
+import com.incognia.common.FinancialAccount;
+import com.incognia.common.HolderTaxID;
+import com.incognia.common.Location;
+import com.incognia.common.PersonID;
+import com.incognia.common.StructuredAddress;
+import com.incognia.feedback.FeedbackEvent;
+import com.incognia.feedback.PostFeedbackRequestBody;
+import com.incognia.onboarding.PostSignupRequestBody;
+import com.incognia.onboarding.RegisterSignupRequest;
+import com.incognia.onboarding.RegisterWebSignupRequest;
+import com.incognia.transaction.AddressType;
+import com.incognia.transaction.PostTransactionRequestBody;
+import com.incognia.transaction.TransactionAddress;
+import com.incognia.transaction.login.RegisterLoginRequest;
+import com.incognia.transaction.login.RegisterWebLoginRequest;
+import com.incognia.transaction.payment.BankAccountInfo;
+import com.incognia.transaction.payment.CardInfo;
+import com.incognia.transaction.payment.Coupon;
+import com.incognia.transaction.payment.PaymentMethod;
+import com.incognia.transaction.payment.PaymentType;
+import com.incognia.transaction.payment.PaymentValue;
+import com.incognia.transaction.payment.PixKey;
+import com.incognia.transaction.payment.RegisterPaymentRequest;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RequestBodySerializersTest {
+  private static final ObjectMapper OBJECT_MAPPER =
+      ObjectMapperFactory.OBJECT_MAPPER.copy().registerModule(RequestBodySerializers.MODULE);
+  private static final Address ADDRESS =
+      Address.builder().addressLine("W 34th St.").coordinates(new Coordinates(40.7, -73.9)).build();
+  private static final Address FULL_ADDRESS =
+      Address.builder()
+          .addressLine("350 Fifth Avenue, New York, NY 10118")
+          .structuredAddress(
+              StructuredAddress.builder()
+                  .locale("en-US")
+                  .countryName("United States of America")
+                  .countryCode("US")
+                  .state("NY")
+                  .county("New York")
+                  .city("New York City")
+                  .borough("Manhattan")
+                  .neighborhood("Midtown")
+                  .street("Fifth Avenue")
+                  .number("350")
+                  .complements("Floor 1")
+                  .postalCode("10118")
+                  .build())
+          .coordinates(new Coordinates(40.7484, -73.9857))
+          .build();
+  private static final Location LOCATION =
+      Location.builder().latitude("40.7").longitude("-73.9").collectedAt("2023-01-01").build();
+  private static final PersonID PERSON_ID = PersonID.ofCPF("12345678901");
+  private static final Map<String, Object> CUSTOM_PROPERTIES =
+      Collections.singletonMap("key", "value");
+
+  @Test
+  void testSerialize_whenPaymentRequest_shouldWriteTheTransactionRequestBody() {
+    Map<String, Object> customProperties = new HashMap<>();
+    customProperties.put("key", "value");
+    customProperties.put("missing", null);
+    Location location = Location.builder().latitude("40.7").longitude("-73.9").build();
+    PaymentValue paymentValue = PaymentValue.builder().amount(13.5).currency("USD").build();
+    RegisterPaymentRequest request =
+        RegisterPaymentRequest.builder()
+            .installationId("installation-id")
+            .accountId("account-id")
+            .deviceOs("Android")
+            .addresses(Collections.singletonMap(AddressType.SHIPPING, ADDRESS))
+            .customProperties(customProperties)
+            .paymentValue(paymentValue)
+            .location(location)
+            .build();
+
+    JsonNode expected =
+        ObjectMapperFactory.OBJECT_MAPPER.valueToTree(
+            PostTransactionRequestBody.builder()
+                .installationId("installation-id")
+                .accountId("account-id")
+                .deviceOs("android")
+                .type("payment")
+                .addresses(
+                    Collections.singletonList(
+                        new TransactionAddress(
+                            "shipping", "W 34th St.", null, ADDRESS.getCoordinates())))
+                .customProperties(customProperties)
+                .paymentValue(paymentValue)
+                .location(location)
+                .build());
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(request)).isEqualTo(expected);
+  }
+
+  @Test
+  void testSerialize_whenSignupRequest_shouldWriteTheSignupRequestBody() {
+    RegisterSignupRequest request =
+        RegisterSignupRequest.builder()
+            .requestToken("request-token")
+            .address(ADDRESS)
+            .customProperties(Collections.emptyMap())
+            .build();
+
+    JsonNode expected =
+        ObjectMapperFactory.OBJECT_MAPPER.valueToTree(
+            PostSignupRequestBody.builder()
+                .requestToken("request-token")
+                .addressLine("W 34th St.")
+                .addressCoordinates(ADDRESS.getCoordinates())
+                .customProperties(Collections.emptyMap())
+                .build());
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(request)).isEqualTo(expected);
+  }
+
+  @Test
+  void testSerialize_whenTransactionRequests_shouldWriteTheSameJsonAsTheirWireBodies() {
+    Map<String, Object> customProperties = Collections.singletonMap("key", "value");
+    RegisterPaymentRequest payment =
+        RegisterPaymentRequest.builder()
+            .installationId("installation-id")
+            .accountId("account-id")
+            .deviceOs("Android")
+            .appVersion("1.0.0")
+            .storeId("store-id")
+            .addresses(Collections.singletonMap(AddressType.BILLING, ADDRESS))
+            .paymentValue(PaymentValue.builder().amount(13.5).currency("USD").build())
+            .personId(PersonID.ofCPF("12345678901"))
+            .customProperties(customProperties)
+            .tenantId("tenant-id")
+            .build();
+    RegisterLoginRequest login =
+        RegisterLoginRequest.builder()
+            .installationId("installation-id")
+            .accountId("account-id")
+            .deviceOs("iOS")
+            .relatedAccountId("related-account-id")
+            .location(Location.builder().latitude("40.7").longitude("-73.9").build())
+            .customProperties(customProperties)
+            .relatedWebRequestToken("web-request-token")
+            .build();
+    RegisterWebLoginRequest webLogin =
+        RegisterWebLoginRequest.builder()
+            .accountId("account-id")
+            .sessionToken("session-token")
+            .policyId("policy-id")
+            .build();
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(payment))
+        .isEqualTo(
+            ObjectMapperFactory.OBJECT_MAPPER.valueToTree(WireRequestBodies.payment(payment)));
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(login))
+        .isEqualTo(ObjectMapperFactory.OBJECT_MAPPER.valueToTree(WireRequestBodies.login(login)));
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(webLogin))
+        .isEqualTo(
+            ObjectMapperFactory.OBJECT_MAPPER.valueToTree(WireRequestBodies.webLogin(webLogin)));
+  }
+
+  @Test
+  void testSerialize_whenSignupRequests_shouldWriteTheSameJsonAsTheirWireBodies() {
+    RegisterSignupRequest signup =
+        RegisterSignupRequest.builder()
+            .installationId("installation-id")
+            .requestToken("request-token")
+            .deviceOs("Android")
+            .address(ADDRESS)
+            .externalId("external-id")
+            .customProperties(Collections.singletonMap("key", "value"))
+            .build();
+    RegisterWebSignupRequest webSignup =
+        RegisterWebSignupRequest.builder()
+            .requestToken("request-token")
+            .accountId("account-id")
+            .tenantId("tenant-id")
+            .build();
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(signup))
+        .isEqualTo(ObjectMapperFactory.OBJECT_MAPPER.valueToTree(WireRequestBodies.signup(signup)));
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(webSignup))
+        .isEqualTo(
+            ObjectMapperFactory.OBJECT_MAPPER.valueToTree(WireRequestBodies.webSignup(webSignup)));
+  }
+
+  @Test
+  void testSerialize_whenFeedbackRequestBody_shouldWriteTheSameJson() {
+    PostFeedbackRequestBody body =
+        PostFeedbackRequestBody.builder()
+            .event(FeedbackEvent.ACCOUNT_TAKEOVER)
+            .timestamp(1700000000000L)
+            .accountId("account-id")
+            .loginId("login-id")
+            .personId(PersonID.ofCPF("12345678901"))
+            .build();
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(body))
+        .isEqualTo(ObjectMapperFactory.OBJECT_MAPPER.valueToTree(body));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfASignupIsSet_shouldWriteItsBodyReflectively()
+      throws Exception {
+    RegisterSignupRequest request =
+        RegisterSignupRequest.builder()
+            .installationId("installation-id")
+            .requestToken("request-token")
+            .appVersion("1.0.0")
+            .deviceOs("Android")
+            .address(FULL_ADDRESS)
+            .externalId("external-id")
+            .policyId("policy-id")
+            .accountId("account-id")
+            .additionalLocations(
+                Collections.singletonList(
+                    AdditionalLocation.builder()
+                        .lat(40.7)
+                        .lng(-73.9)
+                        .timestamp(1700000000000L)
+                        .build()))
+            .customProperties(CUSTOM_PROPERTIES)
+            .personId(PERSON_ID)
+            .relatedWebRequestToken("web-request-token")
+            .tenantId("tenant-id")
+            .build();
+
+    assertWritesItsBody(request, WireRequestBodies.signup(request));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfAWebSignupIsSet_shouldWriteItsBodyReflectively()
+      throws Exception {
+    RegisterWebSignupRequest request =
+        RegisterWebSignupRequest.builder()
+            .sessionToken("session-token")
+            .requestToken("request-token")
+            .externalId("external-id")
+            .policyId("policy-id")
+            .accountId("account-id")
+            .customProperties(CUSTOM_PROPERTIES)
+            .personId(PERSON_ID)
+            .tenantId("tenant-id")
+            .build();
+
+    assertWritesItsBody(request, WireRequestBodies.webSignup(request));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfALoginIsSet_shouldWriteItsBodyReflectively()
+      throws Exception {
+    RegisterLoginRequest request =
+        RegisterLoginRequest.builder()
+            .installationId("installation-id")
+            .requestToken("request-token")
+            .accountId("account-id")
+            .externalId("external-id")
+            .policyId("policy-id")
+            .appVersion("1.0.0")
+            .deviceOs("iOS")
+            .relatedAccountId("related-account-id")
+            .customProperties(CUSTOM_PROPERTIES)
+            .location(LOCATION)
+            .personId(PERSON_ID)
+            .relatedWebRequestToken("web-request-token")
+            .tenantId("tenant-id")
+            .evaluateTransaction(true)
+            .build();
+
+    assertWritesItsBody(request, WireRequestBodies.login(request));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfAWebLoginIsSet_shouldWriteItsBodyReflectively()
+      throws Exception {
+    RegisterWebLoginRequest request =
+        RegisterWebLoginRequest.builder()
+            .accountId("account-id")
+            .externalId("external-id")
+            .sessionToken("session-token")
+            .requestToken("request-token")
+            .policyId("policy-id")
+            .customProperties(CUSTOM_PROPERTIES)
+            .personId(PERSON_ID)
+            .tenantId("tenant-id")
+            .evaluateTransaction(true)
+            .build();
+
+    assertWritesItsBody(request, WireRequestBodies.webLogin(request));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfAPaymentIsSet_shouldWriteItsBodyReflectively()
+      throws Exception {
+    Map<AddressType, Address> addresses = new EnumMap<>(AddressType.class);
+    addresses.put(AddressType.SHIPPING, FULL_ADDRESS);
+    addresses.put(AddressType.BILLING, ADDRESS);
+    CardInfo cardInfo =
+        CardInfo.builder()
+            .bin("123456")
+            .lastFourDigits("1234")
+            .expiryYear("2030")
+            .expiryMonth("10")
+            .build();
+    BankAccountInfo bankAccount =
+        BankAccountInfo.builder()
+            .accountType("checking")
+            .accountPurpose("personal")
+            .holderType("individual")
+            .holderTaxId(PERSON_ID)
+            .country("BR")
+            .ispbCode("12345678")
+            .branchCode("0001")
+            .accountNumber("123456")
+            .accountCheckDigit("7")
+            .pixKeys(Collections.singletonList(PixKey.builder().type("cpf").value("123").build()))
+            .build();
+    RegisterPaymentRequest request =
+        RegisterPaymentRequest.builder()
+            .installationId("installation-id")
+            .requestToken("request-token")
+            .appVersion("1.0.0")
+            .deviceOs("Android")
+            .accountId("account-id")
+            .externalId("external-id")
+            .policyId("policy-id")
+            .storeId("store-id")
+            .addresses(addresses)
+            .paymentMethods(
+                Collections.singletonList(
+                    PaymentMethod.builder()
+                        .type(PaymentType.CREDIT_CARD)
+                        .creditCardInfo(cardInfo)
+                        .debitCardInfo(cardInfo)
+                        .build()))
+            .customProperties(CUSTOM_PROPERTIES)
+            .paymentValue(PaymentValue.builder().amount(13.5).currency("USD").build())
+            .location(LOCATION)
+            .coupon(
+                Coupon.builder()
+                    .type("percent_off")
+                    .value(10.0)
+                    .maxDiscount(5.0)
+                    .id("coupon-id")
+                    .name("coupon")
+                    .build())
+            .personId(PERSON_ID)
+            .debtorAccount(bankAccount)
+            .creditorAccount(bankAccount)
+            .relatedWebRequestToken("web-request-token")
+            .tenantId("tenant-id")
+            .evaluateTransaction(true)
+            .build();
+
+    assertWritesItsBody(request, WireRequestBodies.payment(request));
+  }
+
+  @Test
+  void testSerialize_whenEveryPropertyOfAFeedbackIsSet_shouldWriteItReflectively()
+      throws Exception {
+    PostFeedbackRequestBody body =
+        PostFeedbackRequestBody.builder()
+            .event(FeedbackEvent.ACCOUNT_TAKEOVER)
+            .timestamp(1700000000000L)
+            .accountId("account-id")
+            .externalId("external-id")
+            .installationId("installation-id")
+            .sessionToken("session-token")
+            .requestToken("request-token")
+            .paymentId("payment-id")
+            .loginId("login-id")
+            .signupId("signup-id")
+            .expiresAt("2030-01-01T00:00:00Z")
+            .personId(PERSON_ID)
+            .financialAccount(
+                FinancialAccount.builder()
+                    .accountNumber("123456")
+                    .branchCode("0001")
+                    .holderTaxID(HolderTaxID.ofCPF("12345678901"))
+                    .holderType("individual")
+                    .accountCheckDigit("7")
+                    .accountPurpose("personal")
+                    .accountType("checking")
+                    .country("BR")
+                    .ispbCode("12345678")
+                    .pixKeys(
+                        Collections.singletonList(
+                            PixKey.builder().type("cpf").value("123").build()))
+                    .build())
+            .build();
+
+    assertWritesItsBody(body, body);
+  }
+
+  /**
+   * Writes {@code request} with the hand-written serializer and {@code body}, the class it used to
+   * be copied into, with plain Jackson. Every property of the request has to be set, so that a
+   * property added to a request but not to its serializer fails here.
+   */
+  private static void assertWritesItsBody(Object request, Object body)
+      throws IllegalAccessException {
+    for (Field field : request.getClass().getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        field.setAccessible(true);
+        assertThat(field.get(request)).as(field.getName()).isNotNull();
+      }
+    }
+
+    assertThat((JsonNode) OBJECT_MAPPER.valueToTree(request))
+        .isEqualTo(ObjectMapperFactory.OBJECT_MAPPER.valueToTree(body));
+  }
+}
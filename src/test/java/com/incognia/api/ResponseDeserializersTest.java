@@ -0,0 +1,133 @@
+package com.incognia.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.incognia.api.clients.ObjectMapperFactory;
+import com.incognia.api.clients.TokenResponse;
+import com.incognia.common.Reason;
+import com.incognia.fixtures.ResourceUtils;
+import com.incognia.onboarding.SignupAssessment;
+import com.incognia.transaction.TransactionAssessment;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ResponseDeserializersTest {
+  private static final Reason REASON = Reason.builder().code("code").source("local").build();
+  private static final ObjectMapper OBJECT_MAPPER =
+      ObjectMapperFactory.OBJECT_MAPPER.copy().registerModule(ResponseDeserializers.MODULE);
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "post_transaction_response.json",
+        "post_transaction_response_with_signals.json",
+        "post_transaction_given_false_eval_response.json"
+      })
+  void testDeserialize_whenTransactionResponse_shouldReadTheSameAssessment(String fileName)
+      throws Exception {
+    String response = ResourceUtils.getResourceFileAsString(fileName);
+
+    assertThat(OBJECT_MAPPER.readValue(response, TransactionAssessment.class))
+        .isEqualTo(
+            ObjectMapperFactory.OBJECT_MAPPER.readValue(response, TransactionAssessment.class));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "post_onboarding_response.json",
+        "post_onboarding_response_no_address.json",
+        "post_onboarding_response_with_signals.json"
+      })
+  void testDeserialize_whenSignupResponse_shouldReadTheSameAssessment(String fileName)
+      throws Exception {
+    String response = ResourceUtils.getResourceFileAsString(fileName);
+
+    assertThat(OBJECT_MAPPER.readValue(response, SignupAssessment.class))
+        .isEqualTo(ObjectMapperFactory.OBJECT_MAPPER.readValue(response, SignupAssessment.class));
+  }
+
+  @Test
+  void testDeserialize_whenTokenResponseHasUnknownFields_shouldSkipThem() throws Exception {
+    String response =
+        "{\"access_token\":\"token\",\"scope\":{\"a\":[1]},\"expires_in\":12,\"token_type\":\"Bearer\"}";
+
+    assertThat(OBJECT_MAPPER.readValue(response, TokenResponse.class))
+        .isEqualTo(new TokenResponse("token", 12, "Bearer"));
+  }
+
+  @Test
+  void testDeserialize_whenIdIsMalformed_shouldThrowInvalidFormatException() {
+    String response = "{\"id\":\"not-a-uuid\",\"risk_assessment\":\"low_risk\"}";
+
+    assertThatThrownBy(() -> OBJECT_MAPPER.readValue(response, TransactionAssessment.class))
+        .isInstanceOf(InvalidFormatException.class);
+    assertThatThrownBy(() -> OBJECT_MAPPER.readValue(response, SignupAssessment.class))
+        .isInstanceOf(InvalidFormatException.class);
+  }
+
+  @Test
+  void testDeserialize_whenEveryPropertyIsSet_shouldReadTheTransactionAssessmentBack()
+      throws Exception {
+    TransactionAssessment assessment =
+        TransactionAssessment.builder()
+            .id(UUID.randomUUID())
+            .riskAssessment(Assessment.HIGH_RISK)
+            .reasons(Collections.singletonList(REASON))
+            .actions(Collections.singletonList("block"))
+            .evidence(Collections.singletonMap("device_model", "Pixel"))
+            .signals(Collections.singletonMap("emulator", "detected"))
+            .deviceId("device-id")
+            .installationId("installation-id")
+            .build();
+
+    assertRoundTrips(assessment, TransactionAssessment.class);
+  }
+
+  @Test
+  void testDeserialize_whenEveryPropertyIsSet_shouldReadTheSignupAssessmentBack() throws Exception {
+    SignupAssessment assessment =
+        new SignupAssessment(
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            Assessment.LOW_RISK,
+            Collections.singleton(REASON),
+            Collections.singletonList("allow"),
+            Collections.singletonMap("device_model", "Pixel"),
+            Collections.singletonMap("emulator", "detected"),
+            "device-id",
+            "installation-id");
+
+    assertRoundTrips(assessment, SignupAssessment.class);
+  }
+
+  /**
+   * Writes {@code value} with plain Jackson and reads it back with the hand-written deserializer.
+   * Every property has to be set, so that a property added to the model but not to its deserializer
+   * fails here.
+   */
+  private static <T> void assertRoundTrips(T value, Class<T> type) throws Exception {
+    assertEveryPropertyIsSet(value);
+    assertEveryPropertyIsSet(REASON);
+    String json = ObjectMapperFactory.OBJECT_MAPPER.writeValueAsString(value);
+
+    assertThat(OBJECT_MAPPER.readValue(json, type)).isEqualTo(value);
+  }
+
+  private static void assertEveryPropertyIsSet(Object value) throws IllegalAccessException {
+    for (Field field : value.getClass().getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        field.setAccessible(true);
+        assertThat(field.get(value)).as(field.getName()).isNotNull();
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.incognia.common.utils.AdaptiveConcurrencyLimitOptions;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AimdConcurrencyLimiterTest {
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+  private final AimdConcurrencyLimiter limiter =
+      new AimdConcurrencyLimiter(
+          AdaptiveConcurrencyLimitOptions.builder()
+              .initialLimit(2)
+              .minLimit(1)
+              .maxLimit(4)
+              .latencyThresholdMillis(100L)
+              .backoffRatio(0.5)
+              .build());
+
+  @Test
+  void testTryAcquire_whenLimitIsReached_shouldReject() {
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isFalse();
+    assertThat(limiter.getInFlight()).isEqualTo(2);
+  }
+
+  @Test
+  void testOnSuccess_whenFastAndUtilized_shouldIncreaseUpToMaxLimit() {
+    for (int i = 0; i < 5; i++) {
+      limiter.tryAcquire();
+      limiter.tryAcquire();
+      limiter.onSuccess(FAST);
+      limiter.onSuccess(FAST);
+    }
+
+    assertThat(limiter.getLimit()).isEqualTo(4);
+    assertThat(limiter.getInFlight()).isZero();
+  }
+
+  @Test
+  void testOnSuccess_whenNotUtilized_shouldKeepTheLimit() {
+    AimdConcurrencyLimiter idleLimiter =
+        new AimdConcurrencyLimiter(
+            AdaptiveConcurrencyLimitOptions.builder().initialLimit(10).build());
+
+    idleLimiter.tryAcquire();
+    idleLimiter.onSuccess(FAST);
+
+    assertThat(idleLimiter.getLimit()).isEqualTo(10);
+  }
+
+  @Test
+  void testOnSuccess_whenSlow_shouldDecreaseDownToMinLimit() {
+    limiter.tryAcquire();
+    limiter.onSuccess(SLOW);
+    assertThat(limiter.getLimit()).isEqualTo(1);
+
+    limiter.tryAcquire();
+    limiter.onSuccess(SLOW);
+    assertThat(limiter.getLimit()).isEqualTo(1);
+  }
+
+  @Test
+  void testOnDropped_shouldDecreaseTheLimit() {
+    limiter.tryAcquire();
+    limiter.onDropped();
+
+    assertThat(limiter.getLimit()).isEqualTo(1);
+    assertThat(limiter.getInFlight()).isZero();
+  }
+
+  @Test
+  void testConstructor_whenInitialLimitIsOutOfBounds_shouldThrowIllegalArgumentException() {
+    assertThatThrownBy(
+            () ->
+                new AimdConcurrencyLimiter(
+                    AdaptiveConcurrencyLimitOptions.builder().initialLimit(10).maxLimit(5).build()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'initial limit' must be between 'min limit' and 'max limit'");
+  }
+}
@@ -4,17 +4,27 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.incognia.common.Token;
 import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.BackgroundTokenRefreshOptions;
+import com.incognia.common.utils.CustomOptions;
+import com.incognia.common.utils.TokenManagerOptions;
 import java.lang.reflect.Field;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -127,11 +137,271 @@ class AutoRefreshTokenProviderTest {
     assertThat(dispatcher.getTokenRequestCount()).isEqualTo(2);
   }
 
+  @Test
+  void testGetToken_whenWallClockMovesPastExpiration_shouldNotRefreshToken() throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+
+    Token token = tokenProvider.getToken();
+    Token skewedToken =
+        new Token(
+            token.getAccessToken(),
+            token.getTokenType(),
+            Instant.EPOCH,
+            System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+    setToken(tokenProvider, skewedToken);
+
+    assertThat(tokenProvider.getToken()).isSameAs(skewedToken);
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testGetToken_whenTokenIsAboutToExpire_shouldKeepServingItWhileRefreshing() throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+
+    Token token = tokenProvider.getToken();
+    Token expiringToken =
+        new Token(token.getAccessToken(), token.getTokenType(), Instant.now().plusSeconds(5));
+    setToken(tokenProvider, expiringToken);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(tokenProvider.getToken()).isSameAs(expiringToken);
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (tokenProvider.getToken() == expiringToken && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(tokenProvider.getToken()).isNotSameAs(expiringToken);
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testGetToken_whenBackgroundRefreshIsEnabled_shouldRenewTheTokenWithoutRequests()
+      throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    AutoRefreshTokenProvider backgroundTokenProvider =
+        new AutoRefreshTokenProvider(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+            CustomOptions.builder()
+                .backgroundTokenRefresh(
+                    BackgroundTokenRefreshOptions.builder()
+                        .minLifetimeRatio(0.01)
+                        .maxLifetimeRatio(0.02)
+                        .build())
+                .build());
+
+    Token token = backgroundTokenProvider.getToken();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (backgroundTokenProvider.getToken() == token && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(backgroundTokenProvider.getToken()).isNotSameAs(token);
+    assertThat(dispatcher.getTokenRequestCount()).isGreaterThanOrEqualTo(2);
+  }
+
+  @Test
+  void testGetToken_whenTokenManagerIsSet_shouldRenewTheTokenFromTheManager() throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    TokenManager tokenManager =
+        new TokenManager(TokenManagerOptions.builder().tickMillis(10L).workerThreads(1).build());
+    try {
+      AutoRefreshTokenProvider managedTokenProvider =
+          new AutoRefreshTokenProvider(
+              CLIENT_ID,
+              CLIENT_SECRET,
+              new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+              CustomOptions.builder()
+                  .tokenManager(tokenManager)
+                  .backgroundTokenRefresh(
+                      BackgroundTokenRefreshOptions.builder()
+                          .minLifetimeRatio(0.01)
+                          .maxLifetimeRatio(0.02)
+                          .build())
+                  .build());
+
+      Token token = managedTokenProvider.getToken();
+      // the renewal is scheduled right after the token is handed out
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (tokenManager.getScheduledCount() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(tokenManager.getScheduledCount()).isEqualTo(1);
+
+      while (managedTokenProvider.getToken() == token && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(managedTokenProvider.getToken()).isNotSameAs(token);
+    } finally {
+      tokenManager.shutdown();
+    }
+  }
+
+  @Test
+  void testGetToken_whenMoreProvidersThanWorkersAreDue_shouldBoundConcurrentRenewals()
+      throws Exception {
+    AtomicBoolean slowTokens = new AtomicBoolean();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger peakInFlight = new AtomicInteger();
+    AtomicInteger tokenRequests = new AtomicInteger();
+    mockServer.setDispatcher(
+        new Dispatcher() {
+          @NotNull
+          @Override
+          public MockResponse dispatch(@NotNull RecordedRequest request)
+              throws InterruptedException {
+            int current = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(current, Math::max);
+            if (slowTokens.get()) {
+              Thread.sleep(200);
+            }
+            inFlight.decrementAndGet();
+            return new MockResponse()
+                .setResponseCode(200)
+                .setBody(
+                    "{\"access_token\": \"token-"
+                        + tokenRequests.incrementAndGet()
+                        + "\", \"expires_in\": 300, \"token_type\": \"Bearer\"}");
+          }
+        });
+    TokenManager tokenManager =
+        new TokenManager(TokenManagerOptions.builder().tickMillis(10L).workerThreads(2).build());
+    try {
+      CustomOptions options =
+          CustomOptions.builder()
+              .tokenManager(tokenManager)
+              .backgroundTokenRefresh(
+                  BackgroundTokenRefreshOptions.builder()
+                      .minLifetimeRatio(0.002)
+                      .maxLifetimeRatio(0.003)
+                      .build())
+              .build();
+      List<AutoRefreshTokenProvider> providers = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        AutoRefreshTokenProvider provider =
+            new AutoRefreshTokenProvider(
+                CLIENT_ID,
+                CLIENT_SECRET,
+                new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+                options);
+        provider.getToken();
+        providers.add(provider);
+      }
+      peakInFlight.set(0);
+      slowTokens.set(true);
+
+      // every provider is due within the same 300ms, and each renewal takes 200ms
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (tokenRequests.get() < 12 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertThat(tokenRequests.get()).isGreaterThanOrEqualTo(12);
+      assertThat(peakInFlight.get()).isBetween(1, 2);
+      assertThat(providers).hasSize(6);
+    } finally {
+      tokenManager.shutdown();
+    }
+  }
+
+  @Test
+  void testGetToken_whenTokenManagerIsShutDown_shouldRenewTheTokenOnRequests() throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    TokenManager tokenManager = new TokenManager();
+    tokenManager.shutdown();
+    AutoRefreshTokenProvider managedTokenProvider =
+        new AutoRefreshTokenProvider(
+            CLIENT_ID,
+            CLIENT_SECRET,
+            new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+            CustomOptions.builder().tokenManager(tokenManager).build());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      Token token = executor.submit(managedTokenProvider::getToken).get(5, TimeUnit.SECONDS);
+      expireToken(managedTokenProvider, token);
+      Token refreshedToken =
+          executor.submit(managedTokenProvider::getToken).get(5, TimeUnit.SECONDS);
+
+      assertThat(refreshedToken).isNotSameAs(token);
+      assertThat(dispatcher.getTokenRequestCount()).isEqualTo(2);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testGetToken_whenProvidersShareATokenStore_shouldRequestTheTokenOnlyOnce()
+      throws IncogniaException {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    TokenStore tokenStore = new InMemoryTokenStore();
+
+    Token token = newProviderWithStore(tokenStore).getToken();
+    Token sharedToken = newProviderWithStore(tokenStore).getToken();
+
+    assertThat(sharedToken).isSameAs(token);
+    assertThat(dispatcher.getTokenRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testGetTokenAsync_whenTokenStoreBlocks_shouldNotBlockTheCaller() throws Exception {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    CountDownLatch storeReleased = new CountDownLatch(1);
+    List<String> storeThreads = new ArrayList<>();
+    TokenStore blockingStore =
+        new TokenStore() {
+          @Override
+          public Token get(String key) throws IncogniaException {
+            storeThreads.add(Thread.currentThread().getName());
+            try {
+              storeReleased.await();
+            } catch (InterruptedException e) {
+              throw new IncogniaException("interrupted", e);
+            }
+            return null;
+          }
+
+          @Override
+          public boolean compareAndSet(String key, Token expected, Token token) {
+            return true;
+          }
+        };
+
+    CompletableFuture<Token> token =
+        newProviderWithStore(blockingStore).getTokenAsync().toCompletableFuture();
+
+    assertThat(token).isNotDone();
+    storeReleased.countDown();
+    assertThat(token.get(5, TimeUnit.SECONDS)).isNotNull();
+    assertThat(storeThreads).singleElement().asString().startsWith("incognia-token-store-");
+  }
+
+  private AutoRefreshTokenProvider newProviderWithStore(TokenStore tokenStore) {
+    return new AutoRefreshTokenProvider(
+        CLIENT_ID,
+        CLIENT_SECRET,
+        new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+        CustomOptions.builder().tokenStore(tokenStore).build());
+  }
+
   private static void expireToken(AutoRefreshTokenProvider tokenProvider, Token token)
       throws Exception {
+    setToken(tokenProvider, new Token(token.getAccessToken(), token.getTokenType(), Instant.EPOCH));
+  }
+
+  private static void setToken(AutoRefreshTokenProvider tokenProvider, Token token)
+      throws Exception {
     Field tokenField = AutoRefreshTokenProvider.class.getDeclaredField("token");
     tokenField.setAccessible(true);
-    tokenField.set(
-        tokenProvider, new Token(token.getAccessToken(), token.getTokenType(), Instant.EPOCH));
+    tokenField.set(tokenProvider, token);
   }
 }
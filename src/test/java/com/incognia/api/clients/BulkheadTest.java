@@ -0,0 +1,65 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.incognia.common.exceptions.BulkheadFullException;
+import com.incognia.common.utils.BulkheadOptions;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class BulkheadTest {
+  private final Bulkhead bulkhead =
+      new Bulkhead(
+          "api/v2/feedbacks",
+          BulkheadOptions.builder().maxConcurrentCalls(1).maxQueuedCalls(1).build());
+
+  @Test
+  void testAcquire_whenThereAreFreeSlots_shouldGrantImmediately() {
+    assertThat(bulkhead.acquire()).isCompleted();
+  }
+
+  @Test
+  void testAcquire_whenSlotsAreTaken_shouldQueueAndThenReject() {
+    bulkhead.acquire();
+
+    CompletableFuture<Void> queued = bulkhead.acquire();
+    CompletableFuture<Void> rejected = bulkhead.acquire();
+
+    assertThat(queued).isNotDone();
+    assertThat(rejected)
+        .failsWithin(Duration.ZERO)
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(BulkheadFullException.class)
+        .withMessageContaining("bulkhead for 'api/v2/feedbacks' is full");
+  }
+
+  @Test
+  void testRelease_whenThereIsAWaiter_shouldHandOverThePermit() {
+    bulkhead.acquire();
+    CompletableFuture<Void> queued = bulkhead.acquire();
+
+    bulkhead.release();
+
+    assertThat(queued).isCompleted();
+    assertThat(bulkhead.acquire()).isNotDone();
+  }
+
+  @Test
+  void testAbandon_whenPermitIsQueued_shouldFreeTheQueueSlot() {
+    bulkhead.acquire();
+    CompletableFuture<Void> queued = bulkhead.acquire();
+
+    assertThat(bulkhead.abandon(queued)).isTrue();
+    assertThat(queued).isCancelled();
+    assertThat(bulkhead.acquire()).isNotDone();
+  }
+
+  @Test
+  void testAbandon_whenPermitWasGranted_shouldReturnFalse() {
+    CompletableFuture<Void> granted = bulkhead.acquire();
+
+    assertThat(bulkhead.abandon(granted)).isFalse();
+  }
+}
@@ -0,0 +1,47 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.incognia.common.Token;
+import com.incognia.common.exceptions.IncogniaException;
+import java.nio.file.Path;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileTokenStoreTest {
+  private static final String CLIENT_ID = "client-id";
+
+  @TempDir Path directory;
+
+  @Test
+  void testGet_whenNothingWasStored_shouldReturnNull() throws IncogniaException {
+    assertThat(new FileTokenStore(directory).get(CLIENT_ID)).isNull();
+  }
+
+  @Test
+  void testCompareAndSet_whenExpectedTokenIsCurrent_shouldShareTheTokenBetweenStores()
+      throws IncogniaException {
+    Token token = new Token("access-token", "Bearer", Instant.now().plusSeconds(60));
+
+    assertThat(new FileTokenStore(directory).compareAndSet(CLIENT_ID, null, token)).isTrue();
+
+    FileTokenStore anotherStore = new FileTokenStore(directory);
+    assertThat(anotherStore.get(CLIENT_ID)).isEqualTo(token);
+    assertThat(anotherStore.get("another-client-id")).isNull();
+  }
+
+  @Test
+  void testCompareAndSet_whenStoredTokenChanged_shouldNotWrite() throws IncogniaException {
+    FileTokenStore store = new FileTokenStore(directory);
+    Token first = new Token("first", "Bearer", Instant.now().plusSeconds(60));
+    Token second = new Token("second", "Bearer", Instant.now().plusSeconds(60));
+    Token third = new Token("third", "Bearer", Instant.now().plusSeconds(60));
+    store.compareAndSet(CLIENT_ID, null, first);
+
+    assertThat(store.compareAndSet(CLIENT_ID, null, second)).isFalse();
+    assertThat(store.compareAndSet(CLIENT_ID, first, third)).isTrue();
+    assertThat(store.compareAndSet(CLIENT_ID, first, second)).isFalse();
+    assertThat(store.get(CLIENT_ID)).isEqualTo(third);
+  }
+}
@@ -0,0 +1,45 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HashedTimingWheelTest {
+  private final HashedTimingWheel timingWheel = new HashedTimingWheel(10L, 8, Runnable::run);
+
+  @AfterEach
+  void tearDown() {
+    timingWheel.stop();
+  }
+
+  @Test
+  void testSchedule_whenDelayIsLongerThanOneTurn_shouldRunAfterTheDelay() throws Exception {
+    CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    timingWheel.schedule(ran::countDown, 200L);
+
+    assertThat(ran.await(2, TimeUnit.SECONDS)).isTrue();
+    assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    assertThat(timingWheel.getPendingCount()).isZero();
+  }
+
+  @Test
+  void testCancel_whenTaskIsPending_shouldNotRunIt() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch later = new CountDownLatch(1);
+
+    HashedTimingWheel.Timeout timeout = timingWheel.schedule(runs::incrementAndGet, 50L);
+    timingWheel.schedule(later::countDown, 100L);
+
+    assertThat(timeout.cancel()).isTrue();
+    assertThat(later.await(2, TimeUnit.SECONDS)).isTrue();
+    assertThat(runs.get()).isZero();
+    assertThat(timeout.cancel()).isFalse();
+  }
+}
@@ -0,0 +1,130 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.CompletableFutures;
+import com.incognia.common.utils.HedgingOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HedgingPolicyTest {
+  private final HedgingPolicy policy =
+      new HedgingPolicy(
+          HedgingOptions.builder()
+              .percentile(0.5)
+              .sampleSize(10)
+              .minSamples(2)
+              .minDelayMillis(20L)
+              .build());
+
+  @Test
+  @DisplayName("should not hedge before enough latencies were observed")
+  void testExecute_whenNotEnoughSamples_shouldNotHedge() throws Exception {
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    CompletableFuture<String> result = policy.execute(() -> newAttempt(attempts));
+
+    Thread.sleep(100);
+    assertThat(attempts).hasSize(1);
+    attempts.get(0).complete("primary");
+    assertThat(result.get()).isEqualTo("primary");
+  }
+
+  @Test
+  @DisplayName("should use the hedged response and cancel the slow primary")
+  void testExecute_whenPrimaryIsSlow_shouldReturnHedgeAndCancelPrimary() throws Exception {
+    warmUp();
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    CompletableFuture<String> result = policy.execute(() -> newAttempt(attempts));
+
+    awaitAttempts(attempts, 2);
+    attempts.get(1).complete("hedge");
+
+    assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedge");
+    assertThat(attempts.get(0)).isCancelled();
+  }
+
+  @Test
+  @DisplayName("should fail only when every attempt failed")
+  void testExecute_whenAllAttemptsFail_shouldFail() throws Exception {
+    warmUp();
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    CompletableFuture<String> result = policy.execute(() -> newAttempt(attempts));
+
+    awaitAttempts(attempts, 2);
+    attempts.get(0).completeExceptionally(new IncogniaException("primary failed"));
+    assertThat(result).isNotDone();
+    attempts.get(1).completeExceptionally(new IncogniaException("hedge failed"));
+
+    assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IncogniaException.class)
+        .cause()
+        .hasMessage("hedge failed");
+  }
+
+  @Test
+  @DisplayName("should not sample primaries cancelled by the caller")
+  void testExecute_whenCallerCancelsThePrimary_shouldNotRecordIt() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      policy.execute(CompletableFuture::new).cancel(false);
+    }
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    policy.execute(() -> newAttempt(attempts));
+
+    Thread.sleep(100);
+    assertThat(sizeOf(attempts)).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("should sample failed primaries with the time they took")
+  void testExecute_whenPrimariesFail_shouldRecordThem() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      policy.execute(
+          () -> CompletableFutures.failedFuture(new IncogniaException("network call timeout")));
+    }
+    List<CompletableFuture<String>> attempts = new ArrayList<>();
+    policy.execute(() -> newAttempt(attempts));
+
+    awaitAttempts(attempts, 2);
+  }
+
+  @Test
+  @DisplayName("should reject a percentile outside of (0, 1]")
+  void testConstructor_whenPercentileIsInvalid_shouldThrow() {
+    assertThatThrownBy(() -> new HedgingPolicy(HedgingOptions.builder().percentile(1.5).build()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private void warmUp() {
+    for (int i = 0; i < 2; i++) {
+      policy.execute(() -> CompletableFuture.completedFuture("warm up"));
+    }
+  }
+
+  private static synchronized CompletableFuture<String> newAttempt(
+      List<CompletableFuture<String>> attempts) {
+    CompletableFuture<String> attempt = new CompletableFuture<>();
+    attempts.add(attempt);
+    return attempt;
+  }
+
+  private static void awaitAttempts(List<CompletableFuture<String>> attempts, int count)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    while (sizeOf(attempts) < count && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(sizeOf(attempts)).isEqualTo(count);
+  }
+
+  private static synchronized int sizeOf(List<CompletableFuture<String>> attempts) {
+    return attempts.size();
+  }
+}
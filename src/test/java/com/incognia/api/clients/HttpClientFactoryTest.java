@@ -0,0 +1,111 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.incognia.common.utils.BulkheadOptions;
+import com.incognia.common.utils.CustomOptions;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+class HttpClientFactoryTest {
+  @Test
+  void testCreate_whenNoDispatcherOptions_shouldUseDefaultLimits() {
+    OkHttpClient httpClient = HttpClientFactory.create(CustomOptions.builder().build());
+
+    assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(64);
+    assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(5);
+  }
+
+  @Test
+  void testCreate_whenDispatcherOptionsAreProvided_shouldUseThem() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      OkHttpClient httpClient =
+          HttpClientFactory.create(
+              CustomOptions.builder()
+                  .maxRequests(256)
+                  .maxRequestsPerHost(128)
+                  .dispatcherExecutor(executor)
+                  .build());
+
+      assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(256);
+      assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(128);
+      assertThat(httpClient.dispatcher().executorService()).isSameAs(executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCreate_whenMaxRequestsPerHostIsNotPositive_shouldThrowIllegalArgumentException() {
+    assertThatThrownBy(
+            () -> HttpClientFactory.create(CustomOptions.builder().maxRequestsPerHost(0).build()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'max requests per host' must be positive");
+  }
+
+  @Test
+  void testCreate_whenBulkheadsAdmitMoreCalls_shouldRaiseTheDispatcherLimits() {
+    OkHttpClient httpClient =
+        HttpClientFactory.create(
+            CustomOptions.builder()
+                .feedbacksBulkhead(BulkheadOptions.builder().maxConcurrentCalls(30).build())
+                .transactionsBulkhead(BulkheadOptions.builder().maxConcurrentCalls(40).build())
+                .build());
+
+    assertThat(httpClient.dispatcher().getMaxRequests()).isEqualTo(70);
+    assertThat(httpClient.dispatcher().getMaxRequestsPerHost()).isEqualTo(70);
+  }
+
+  @Test
+  void testCreateForTokens_shouldShareConnectionsButNotTheDispatcher() {
+    CustomOptions options = CustomOptions.builder().tokenTimeoutMillis(3000L).build();
+    OkHttpClient httpClient = HttpClientFactory.create(options);
+
+    OkHttpClient tokenHttpClient = HttpClientFactory.createForTokens(httpClient, options);
+
+    assertThat(tokenHttpClient.connectionPool()).isSameAs(httpClient.connectionPool());
+    assertThat(tokenHttpClient.dispatcher()).isNotSameAs(httpClient.dispatcher());
+    assertThat(tokenHttpClient.callTimeoutMillis()).isEqualTo(3000);
+  }
+
+  @Test
+  void testCreateForTokens_whenClientIsCustomized_shouldKeepItsSettingsButNotItsExecutor() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CustomOptions options = CustomOptions.builder().dispatcherExecutor(executor).build();
+      Interceptor interceptor = chain -> chain.proceed(chain.request());
+      Proxy proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 8080));
+      OkHttpClient httpClient =
+          HttpClientFactory.create(options)
+              .newBuilder()
+              .addInterceptor(interceptor)
+              .proxy(proxy)
+              .build();
+
+      OkHttpClient tokenHttpClient = HttpClientFactory.createForTokens(httpClient, options);
+
+      assertThat(tokenHttpClient.interceptors()).containsExactly(interceptor);
+      assertThat(tokenHttpClient.proxy()).isSameAs(proxy);
+      assertThat(tokenHttpClient.dispatcher().executorService()).isNotSameAs(executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCreateForTokens_whenTokenTimeoutIsNotPositive_shouldThrowIllegalArgumentException() {
+    CustomOptions options = CustomOptions.builder().tokenTimeoutMillis(0L).build();
+    OkHttpClient httpClient = HttpClientFactory.create(options);
+
+    assertThatThrownBy(() -> HttpClientFactory.createForTokens(httpClient, options))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("'token timeout millis' must be positive");
+  }
+}
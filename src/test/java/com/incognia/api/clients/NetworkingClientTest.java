@@ -3,15 +3,26 @@ package com.incognia.api.clients;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.incognia.common.exceptions.BulkheadFullException;
 import com.incognia.common.exceptions.IncogniaAPIException;
 import com.incognia.common.exceptions.IncogniaException;
+import com.incognia.common.utils.BulkheadOptions;
+import com.incognia.common.utils.RequestOptions;
 import com.incognia.fixtures.TestRequestBody;
 import com.incognia.fixtures.TestResponseBody;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import lombok.SneakyThrows;
+import okhttp3.Headers;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -100,4 +111,277 @@ class NetworkingClientTest {
               assertThat(((IncogniaAPIException) e).getStatusCode()).isEqualTo(500);
             });
   }
+
+  @Test
+  @DisplayName("should complete the future exceptionally with an incognia api exception")
+  void testDoPostAsync_whenInternalErrorResponse() {
+    mockServer.enqueue(new MockResponse().setResponseCode(500));
+
+    assertThatThrownBy(
+            () ->
+                client
+                    .doPostAsync(
+                        "v2/testurl",
+                        new TestRequestBody("id", 123),
+                        TestResponseBody.class,
+                        Collections.emptyMap(),
+                        Collections.emptyMap())
+                    .get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e -> {
+              assertThat(e.getCause()).isInstanceOf(IncogniaAPIException.class);
+              assertThat(((IncogniaAPIException) e.getCause()).getStatusCode()).isEqualTo(500);
+            });
+  }
+
+  @Test
+  @DisplayName("should reject calls over the bulkhead capacity of the endpoint")
+  void testDoPostAsync_whenBulkheadIsFull_shouldReject() throws Exception {
+    NetworkingClient bulkheadClient =
+        new NetworkingClient(
+            new OkHttpClient(),
+            mockServer.url("").toString(),
+            Bulkheads.from(
+                Collections.singletonMap(
+                    "api/v2/feedbacks",
+                    BulkheadOptions.builder().maxConcurrentCalls(1).maxQueuedCalls(0).build()),
+                null));
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setHeadersDelay(1, TimeUnit.SECONDS));
+    mockServer.enqueue(new MockResponse().setResponseCode(200));
+
+    CompletableFuture<Void> first =
+        bulkheadClient.doPostAsync(
+            "api/v2/feedbacks", null, Collections.emptyMap(), Collections.emptyMap());
+    CompletableFuture<Void> rejected =
+        bulkheadClient.doPostAsync(
+            "api/v2/feedbacks", null, Collections.emptyMap(), Collections.emptyMap());
+    CompletableFuture<Void> otherEndpoint =
+        bulkheadClient.doPostAsync(
+            "api/v2/authentication/transactions",
+            null,
+            Collections.emptyMap(),
+            Collections.emptyMap());
+
+    assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(BulkheadFullException.class);
+    otherEndpoint.get(5, TimeUnit.SECONDS);
+    first.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  @DisplayName("should bound the wait for a bulkhead permit by the call timeout")
+  void testDoPostAsync_whenBulkheadIsBusyWithoutDeadline_shouldRejectAfterCallTimeout() {
+    Bulkheads bulkheads =
+        Bulkheads.from(
+            Collections.singletonMap(
+                "api/v2/feedbacks",
+                BulkheadOptions.builder().maxConcurrentCalls(1).maxQueuedCalls(1).build()),
+            null);
+    NetworkingClient bulkheadClient =
+        new NetworkingClient(
+            new OkHttpClient.Builder().callTimeout(500, TimeUnit.MILLISECONDS).build(),
+            mockServer.url("").toString(),
+            bulkheads);
+    // holds the only permit, as a call in flight would
+    bulkheads.forPath("api/v2/feedbacks").acquire();
+
+    CompletableFuture<Void> queued =
+        bulkheadClient.doPostAsync(
+            "api/v2/feedbacks", null, Collections.emptyMap(), Collections.emptyMap());
+
+    assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(BulkheadFullException.class);
+  }
+
+  @Test
+  @DisplayName("should time out the call once its deadline passes")
+  void testDoPost_whenDeadlineExpires_shouldTimeout() {
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setHeadersDelay(2, TimeUnit.SECONDS));
+
+    long start = System.nanoTime();
+    assertThatThrownBy(
+            () ->
+                client.doPost(
+                    "v2/testurl",
+                    new TestRequestBody("id", 123),
+                    TestResponseBody.class,
+                    Headers.of(),
+                    Collections.emptyMap(),
+                    Deadline.from(RequestOptions.builder().timeoutMillis(100L).build())))
+        .isInstanceOf(IncogniaException.class)
+        .hasMessage("network call timeout");
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  @DisplayName("should cancel the http call when the future is cancelled")
+  void testDoPostAsync_whenFutureIsCancelled_shouldCancelCall() throws Exception {
+    OkHttpClient httpClient = new OkHttpClient();
+    NetworkingClient cancellableClient =
+        new NetworkingClient(httpClient, mockServer.url("").toString());
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setHeadersDelay(5, TimeUnit.SECONDS));
+
+    CompletableFuture<TestResponseBody> future =
+        cancellableClient.doPostAsync(
+            "v2/testurl",
+            new TestRequestBody("id", 123),
+            TestResponseBody.class,
+            Collections.emptyMap(),
+            Collections.emptyMap());
+    mockServer.takeRequest(1, TimeUnit.SECONDS);
+    future.cancel(true);
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    while (httpClient.dispatcher().runningCallsCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(httpClient.dispatcher().runningCallsCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("should open one connection per concurrent request over HTTP/1.1")
+  void testWarmUp_shouldOpenOneConnectionPerRequest() throws Exception {
+    mockServer.setDispatcher(new ConcurrentRequestsDispatcher(3));
+
+    int openConnections = client.warmUp(3);
+
+    assertThat(openConnections).isEqualTo(3);
+    assertThat(mockServer.getRequestCount()).isEqualTo(3);
+    assertThat(mockServer.takeRequest().getMethod()).isEqualTo("HEAD");
+  }
+
+  @Test
+  @DisplayName("should not send more concurrent requests than the dispatcher allows per host")
+  void testWarmUp_whenMaxRequestsPerHostIsLower_shouldOpenThatManyConnections() throws Exception {
+    mockServer.setDispatcher(new ConcurrentRequestsDispatcher(2));
+    OkHttpClient httpClient = new OkHttpClient();
+    httpClient.dispatcher().setMaxRequestsPerHost(2);
+    NetworkingClient limitedClient =
+        new NetworkingClient(httpClient, mockServer.url("").toString());
+
+    int openConnections = limitedClient.warmUp(3);
+
+    assertThat(openConnections).isEqualTo(2);
+    assertThat(mockServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("should multiplex the requests onto a single connection over HTTP/2")
+  void testWarmUp_whenUsingHttp2_shouldOpenASingleConnection() throws Exception {
+    mockServer.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+    mockServer.setDispatcher(new ConcurrentRequestsDispatcher(3));
+    OkHttpClient httpClient =
+        new OkHttpClient.Builder()
+            .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE))
+            .build();
+    NetworkingClient http2Client = new NetworkingClient(httpClient, mockServer.url("").toString());
+
+    int openConnections = http2Client.warmUp(3);
+
+    assertThat(openConnections).isEqualTo(1);
+    assertThat(mockServer.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  @DisplayName("should report serialization errors of the streamed body as such")
+  void testDoPost_whenBodyCannotBeSerialized_shouldThrowIncogniaException() {
+    mockServer.enqueue(new MockResponse().setResponseCode(200));
+
+    assertThatThrownBy(
+            () ->
+                client.doPost(
+                    "v2/testurl",
+                    new Object(),
+                    TestResponseBody.class,
+                    Collections.emptyMap(),
+                    Collections.emptyMap()))
+        .isInstanceOf(IncogniaException.class)
+        .hasMessage("failed writing request body");
+  }
+
+  @Test
+  @DisplayName(
+      "should report unchecked exceptions of the codec while writing as serialization errors")
+  void testDoPost_whenCodecThrowsWhileWriting_shouldReportASerializationError() {
+    JsonCodec jsonCodec =
+        new JacksonJsonCodec(ObjectMapperFactory.OBJECT_MAPPER) {
+          @Override
+          public void write(Object value, OutputStream out) {
+            throw new IllegalStateException("broken codec");
+          }
+        };
+    NetworkingClient failingClient =
+        new NetworkingClient(
+            new OkHttpClient(), mockServer.url("").toString(), Bulkheads.none(), jsonCodec);
+    mockServer.enqueue(new MockResponse().setResponseCode(200));
+
+    assertThatThrownBy(
+            () ->
+                failingClient.doPost(
+                    "v2/testurl",
+                    new TestRequestBody("id", 123),
+                    TestResponseBody.class,
+                    Collections.emptyMap(),
+                    Collections.emptyMap()))
+        .isInstanceOf(IncogniaException.class)
+        .hasMessage("failed writing request body")
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  @DisplayName("should fail the future when reading the response throws an unchecked exception")
+  void testDoPostAsync_whenResponseHandlerThrows_shouldFailTheFuture() {
+    JsonCodec jsonCodec =
+        new JacksonJsonCodec(ObjectMapperFactory.OBJECT_MAPPER) {
+          @Override
+          public <T> T read(InputStream in, Class<T> type) {
+            throw new IllegalStateException("broken codec");
+          }
+        };
+    NetworkingClient failingClient =
+        new NetworkingClient(
+            new OkHttpClient(), mockServer.url("").toString(), Bulkheads.none(), jsonCodec);
+    mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+    assertThatThrownBy(
+            () ->
+                failingClient
+                    .doPostAsync(
+                        "v2/testurl",
+                        new TestRequestBody("id", 123),
+                        TestResponseBody.class,
+                        Collections.emptyMap(),
+                        Collections.emptyMap())
+                    .get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .satisfies(
+            e -> {
+              assertThat(e.getCause())
+                  .isInstanceOf(IncogniaException.class)
+                  .hasMessage("failed reading response body")
+                  .hasCauseInstanceOf(IllegalStateException.class);
+            });
+  }
+
+  /** Holds every response until {@code requests} requests are in flight at once. */
+  private static final class ConcurrentRequestsDispatcher extends Dispatcher {
+    private final CountDownLatch inFlight;
+
+    private ConcurrentRequestsDispatcher(int requests) {
+      this.inFlight = new CountDownLatch(requests);
+    }
+
+    @SneakyThrows
+    @NotNull
+    @Override
+    public MockResponse dispatch(@NotNull RecordedRequest request) {
+      inFlight.countDown();
+      inFlight.await(5, TimeUnit.SECONDS);
+      return new MockResponse().setResponseCode(404);
+    }
+  }
 }
@@ -0,0 +1,135 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.incognia.common.RequestPriority;
+import com.incognia.common.exceptions.RequestShedException;
+import com.incognia.common.utils.PrioritySchedulingOptions;
+import com.incognia.common.utils.RequestOptions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PrioritySchedulerTest {
+  private final PriorityScheduler scheduler =
+      new PriorityScheduler(
+          PrioritySchedulingOptions.builder()
+              .maxInFlight(1)
+              .maxQueued(2)
+              .maxQueueTimeMillis(10_000L)
+              .build());
+
+  @Test
+  void testRelease_whenRequestsAreQueued_shouldGrantTheMostImportantFirst() {
+    assertThat(scheduler.acquire(RequestPriority.LOW, Deadline.none())).isCompleted();
+    CompletableFuture<Void> feedback = scheduler.acquire(RequestPriority.LOW, Deadline.none());
+    CompletableFuture<Void> payment = scheduler.acquire(RequestPriority.CRITICAL, Deadline.none());
+
+    scheduler.release();
+
+    assertThat(payment).isCompleted();
+    assertThat(feedback).isNotDone();
+    scheduler.release();
+    assertThat(feedback).isCompleted();
+    scheduler.release();
+    assertThat(scheduler.getInFlight()).isZero();
+  }
+
+  @Test
+  void testAcquire_whenQueueIsFull_shouldShedTheLeastImportant() {
+    scheduler.acquire(RequestPriority.HIGH, Deadline.none());
+    CompletableFuture<Void> signup = scheduler.acquire(RequestPriority.NORMAL, Deadline.none());
+    CompletableFuture<Void> feedback = scheduler.acquire(RequestPriority.LOW, Deadline.none());
+
+    CompletableFuture<Void> payment = scheduler.acquire(RequestPriority.CRITICAL, Deadline.none());
+    CompletableFuture<Void> anotherFeedback =
+        scheduler.acquire(RequestPriority.LOW, Deadline.none());
+
+    assertThat(payment).isNotDone();
+    assertThat(signup).isNotDone();
+    assertThatThrownBy(feedback::join)
+        .hasCauseInstanceOf(RequestShedException.class)
+        .hasMessageContaining("request with low priority was shed");
+    assertThatThrownBy(anotherFeedback::join).hasCauseInstanceOf(RequestShedException.class);
+    assertThat(scheduler.getQueued()).isEqualTo(2);
+  }
+
+  @Test
+  void testAcquire_whenWaitingPastTheDeadline_shouldShed() throws Exception {
+    scheduler.acquire(RequestPriority.HIGH, Deadline.none());
+
+    CompletableFuture<Void> permit =
+        scheduler.acquire(
+            RequestPriority.NORMAL,
+            Deadline.from(RequestOptions.builder().timeoutMillis(50L).build()));
+
+    assertThatThrownBy(() -> permit.get(1, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(RequestShedException.class);
+    assertThat(scheduler.getQueued()).isZero();
+  }
+
+  @Test
+  void testAbandon_whenPermitIsQueued_shouldRemoveIt() {
+    scheduler.acquire(RequestPriority.HIGH, Deadline.none());
+    CompletableFuture<Void> permit = scheduler.acquire(RequestPriority.LOW, Deadline.none());
+
+    assertThat(scheduler.abandon(permit)).isTrue();
+    assertThat(permit).isCancelled();
+    scheduler.release();
+    assertThat(scheduler.getInFlight()).isZero();
+  }
+
+  @Test
+  void testAcquire_whenSlotsAreReservedPerPriority_shouldKeepThemForMoreImportantRequests() {
+    PriorityScheduler reservingScheduler =
+        new PriorityScheduler(
+            PrioritySchedulingOptions.builder()
+                .maxInFlight(4)
+                .reservedInFlightPerPriority(1)
+                .maxQueueTimeMillis(10_000L)
+                .build());
+
+    assertThat(reservingScheduler.acquire(RequestPriority.LOW, Deadline.none())).isCompleted();
+    CompletableFuture<Void> feedback =
+        reservingScheduler.acquire(RequestPriority.LOW, Deadline.none());
+    assertThat(reservingScheduler.acquire(RequestPriority.NORMAL, Deadline.none())).isCompleted();
+    assertThat(reservingScheduler.acquire(RequestPriority.HIGH, Deadline.none())).isCompleted();
+    CompletableFuture<Void> login =
+        reservingScheduler.acquire(RequestPriority.HIGH, Deadline.none());
+    assertThat(reservingScheduler.acquire(RequestPriority.CRITICAL, Deadline.none())).isCompleted();
+
+    assertThat(feedback).isNotDone();
+    assertThat(login).isNotDone();
+    assertThat(reservingScheduler.getInFlight()).isEqualTo(4);
+
+    reservingScheduler.release();
+
+    assertThat(login).isNotDone();
+    reservingScheduler.release();
+    assertThat(login).isCompleted();
+    reservingScheduler.release();
+    reservingScheduler.release();
+    assertThat(feedback).isNotDone();
+    assertThat(reservingScheduler.getInFlight()).isEqualTo(1);
+
+    reservingScheduler.release();
+
+    assertThat(feedback).isCompleted();
+    assertThat(reservingScheduler.getInFlight()).isEqualTo(1);
+  }
+
+  @Test
+  void testConstructor_whenReservationsLeaveNoSlotForTheLeastImportant_shouldThrow() {
+    assertThatThrownBy(
+            () ->
+                new PriorityScheduler(
+                    PrioritySchedulingOptions.builder()
+                        .maxInFlight(6)
+                        .reservedInFlightPerPriority(2)
+                        .build()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage(
+            "'reserved in flight per priority' must leave the least important priority a slot");
+  }
+}
@@ -2,20 +2,37 @@ package com.incognia.api.clients;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import com.incognia.api.ProjectVersion;
+import com.incognia.common.RequestPriority;
 import com.incognia.common.Token;
+import com.incognia.common.exceptions.BulkheadFullException;
+import com.incognia.common.exceptions.ConcurrencyLimitExceededException;
 import com.incognia.common.exceptions.IncogniaAPIException;
 import com.incognia.common.exceptions.IncogniaException;
 import com.incognia.common.exceptions.TokenExpiredException;
 import com.incognia.common.exceptions.TokenNotFoundException;
+import com.incognia.common.utils.AdaptiveConcurrencyLimitOptions;
+import com.incognia.common.utils.PrioritySchedulingOptions;
+import com.incognia.common.utils.RequestOptions;
 import com.incognia.fixtures.TestRequestBody;
 import com.incognia.fixtures.TestResponseBody;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -233,4 +250,292 @@ class TokenAwareNetworkingClientTest {
         .isInstanceOf(IncogniaException.class)
         .hasMessage("token provider returned a token without access token");
   }
+
+  @Test
+  @DisplayName("should fail fast when the concurrency limit is reached")
+  void testDoPost_whenConcurrencyLimitIsReached_shouldFailFast() throws IncogniaException {
+    TokenAwareDispatcher dispatcher = new TokenAwareDispatcher(CLIENT_ID, CLIENT_SECRET);
+    mockServer.setDispatcher(dispatcher);
+    manualRefreshTokenProvider.refresh();
+    AimdConcurrencyLimiter limiter =
+        new AimdConcurrencyLimiter(
+            AdaptiveConcurrencyLimitOptions.builder().initialLimit(1).build());
+    TokenAwareNetworkingClient limitedClient =
+        new TokenAwareNetworkingClient(
+            new NetworkingClient(new OkHttpClient(), mockServer.url("").toString()),
+            manualRefreshTokenProvider,
+            limiter);
+    limiter.tryAcquire();
+
+    assertThatThrownBy(
+            () ->
+                limitedClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class))
+        .isInstanceOf(ConcurrencyLimitExceededException.class);
+
+    limiter.onIgnored();
+    TestResponseBody testResponseBody =
+        limitedClient.doPost(
+            "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class);
+
+    assertThat(testResponseBody.getName()).isEqualTo("my awesome name");
+    assertThat(limiter.getInFlight()).isZero();
+  }
+
+  @Test
+  @DisplayName("should not lower the concurrency limit for local rejections and expired deadlines")
+  void testDoPost_whenRejectedLocallyOrPastTheDeadline_shouldNotLowerTheConcurrencyLimit()
+      throws Exception {
+    TokenProvider tokenProvider = mock(TokenProvider.class);
+    doReturn(new Token("token", "Bearer", Instant.now().plusSeconds(60)))
+        .when(tokenProvider)
+        .getToken();
+    NetworkingClient networkingClient = mock(NetworkingClient.class);
+    doThrow(new BulkheadFullException("api/v2/onboarding"))
+        .doThrow(new IncogniaException("network call timeout"))
+        .doThrow(new IncogniaException("network call failed"))
+        .when(networkingClient)
+        .doPost(any(), any(), any(), any(Headers.class), any(), any(), any());
+    AimdConcurrencyLimiter limiter =
+        new AimdConcurrencyLimiter(
+            AdaptiveConcurrencyLimitOptions.builder().initialLimit(10).build());
+    TokenAwareNetworkingClient limitedClient =
+        new TokenAwareNetworkingClient(networkingClient, tokenProvider, limiter);
+    Deadline expiredDeadline = Deadline.from(RequestOptions.builder().timeoutMillis(1L).build());
+    Thread.sleep(5);
+
+    assertThatThrownBy(
+            () ->
+                limitedClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class))
+        .isInstanceOf(BulkheadFullException.class);
+    assertThatThrownBy(
+            () ->
+                limitedClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class,
+                    Collections.emptyMap(),
+                    expiredDeadline,
+                    RequestPriority.NORMAL))
+        .hasMessage("network call timeout");
+
+    assertThat(limiter.getLimit()).isEqualTo(10);
+
+    assertThatThrownBy(
+            () ->
+                limitedClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class))
+        .hasMessage("network call failed");
+
+    assertThat(limiter.getLimit()).isLessThan(10);
+    assertThat(limiter.getInFlight()).isZero();
+  }
+
+  @Test
+  @DisplayName("should renew a rejected token and retry the request once")
+  void testDoPost_whenTokenIsRejected_shouldRenewTokenAndRetryOnce() throws Exception {
+    enqueueUnauthorizedThenRenewedToken();
+
+    TestResponseBody testResponseBody =
+        client.doPost(
+            "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class);
+
+    assertThat(testResponseBody.getName()).isEqualTo("my awesome name");
+    assertRetriedWithRenewedToken();
+  }
+
+  @Test
+  @DisplayName("should renew a rejected token and retry the asynchronous request once")
+  void testDoPostAsync_whenTokenIsRejected_shouldRenewTokenAndRetryOnce() throws Exception {
+    enqueueUnauthorizedThenRenewedToken();
+
+    TestResponseBody testResponseBody =
+        client
+            .doPostAsync(
+                "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class)
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(testResponseBody.getName()).isEqualTo("my awesome name");
+    assertRetriedWithRenewedToken();
+  }
+
+  @Test
+  @DisplayName("should not retry when the provider cannot renew the rejected token")
+  void testDoPost_whenManualTokenIsRejected_shouldNotRetry() throws Exception {
+    mockServer.enqueue(tokenResponse("token"));
+    manualRefreshTokenProvider.refresh();
+    mockServer.enqueue(new MockResponse().setResponseCode(401));
+
+    assertThatThrownBy(
+            () ->
+                manualClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class))
+        .isInstanceOf(IncogniaAPIException.class);
+    assertThat(mockServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("should send the asynchronous request once the async provider hands out a token")
+  void testDoPostAsync_whenUsingAsyncTokenProvider_shouldWaitForTheTokenWithoutBlocking()
+      throws Exception {
+    CompletableFuture<Token> pendingToken = new CompletableFuture<>();
+    TokenAwareNetworkingClient asyncClient =
+        new TokenAwareNetworkingClient(
+            new OkHttpClient(),
+            mockServer.url("").toString(),
+            TokenProviders.fromAsync(() -> pendingToken));
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setBody("{\"name\": \"my awesome name\"}"));
+
+    CompletableFuture<TestResponseBody> response =
+        asyncClient.doPostAsync(
+            "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class);
+
+    assertThat(response).isNotDone();
+    assertThat(mockServer.getRequestCount()).isZero();
+
+    pendingToken.complete(new Token("async-token", "Bearer", Instant.now().plusSeconds(60)));
+
+    assertThat(response.get(5, TimeUnit.SECONDS).getName()).isEqualTo("my awesome name");
+    assertThat(mockServer.takeRequest().getHeader("Authorization")).isEqualTo("Bearer async-token");
+  }
+
+  @Test
+  @DisplayName("should fail the future when sending the asynchronous request throws")
+  void testDoPostAsync_whenSendingThrows_shouldFailTheFuture() throws Exception {
+    TokenProvider tokenProvider = mock(TokenProvider.class);
+    doReturn(new Token("token", "Bearer", Instant.now().plusSeconds(60)))
+        .when(tokenProvider)
+        .getToken();
+    NetworkingClient networkingClient = mock(NetworkingClient.class);
+    doThrow(new IllegalStateException("broken"))
+        .when(networkingClient)
+        .doPostAsync(any(), any(), any(), any(Headers.class), any(), any(), any());
+    TokenAwareNetworkingClient failingClient =
+        new TokenAwareNetworkingClient(networkingClient, tokenProvider, null);
+
+    CompletableFuture<TestResponseBody> response =
+        failingClient.doPostAsync(
+            "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class);
+
+    assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  @DisplayName("should get the token only once the scheduling permit is granted")
+  void testDoPost_whenWaitingForAPermit_shouldNotGetTheTokenYet() throws Exception {
+    TokenProvider tokenProvider = mock(TokenProvider.class);
+    doReturn(new Token("token", "Bearer", Instant.now().plusSeconds(60)))
+        .when(tokenProvider)
+        .getToken();
+    PriorityScheduler scheduler =
+        new PriorityScheduler(PrioritySchedulingOptions.builder().maxInFlight(1).build());
+    TokenAwareNetworkingClient scheduledClient =
+        new TokenAwareNetworkingClient(
+            mock(NetworkingClient.class), tokenProvider, null, scheduler);
+    scheduler.acquire(RequestPriority.CRITICAL, Deadline.none());
+
+    CompletableFuture<TestResponseBody> response =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return scheduledClient.doPost(
+                    "api/v2/onboarding",
+                    new TestRequestBody("my-id", 1234),
+                    TestResponseBody.class);
+              } catch (IncogniaException e) {
+                throw new CompletionException(e);
+              }
+            });
+    awaitQueued(scheduler);
+
+    verify(tokenProvider, never()).getToken();
+
+    scheduler.release();
+    response.get(5, TimeUnit.SECONDS);
+
+    verify(tokenProvider).getToken();
+    assertThat(scheduler.getInFlight()).isZero();
+  }
+
+  @Test
+  @DisplayName("should get the token asynchronously only once the scheduling permit is granted")
+  void testDoPostAsync_whenWaitingForAPermit_shouldNotGetTheTokenYet() throws Exception {
+    AtomicInteger tokenRequests = new AtomicInteger();
+    TokenProvider tokenProvider =
+        TokenProviders.fromAsync(
+            () -> {
+              tokenRequests.incrementAndGet();
+              return CompletableFuture.completedFuture(
+                  new Token("token", "Bearer", Instant.now().plusSeconds(60)));
+            });
+    NetworkingClient networkingClient = mock(NetworkingClient.class);
+    doReturn(CompletableFuture.completedFuture(null))
+        .when(networkingClient)
+        .doPostAsync(any(), any(), any(), any(Headers.class), any(), any(), any());
+    PriorityScheduler scheduler =
+        new PriorityScheduler(PrioritySchedulingOptions.builder().maxInFlight(1).build());
+    TokenAwareNetworkingClient scheduledClient =
+        new TokenAwareNetworkingClient(networkingClient, tokenProvider, null, scheduler);
+    scheduler.acquire(RequestPriority.CRITICAL, Deadline.none());
+
+    CompletableFuture<TestResponseBody> response =
+        scheduledClient.doPostAsync(
+            "api/v2/onboarding", new TestRequestBody("my-id", 1234), TestResponseBody.class);
+
+    assertThat(response).isNotDone();
+    assertThat(tokenRequests).hasValue(0);
+
+    scheduler.release();
+    response.get(5, TimeUnit.SECONDS);
+
+    assertThat(tokenRequests).hasValue(1);
+    assertThat(scheduler.getInFlight()).isZero();
+  }
+
+  private static void awaitQueued(PriorityScheduler scheduler) throws InterruptedException {
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (scheduler.getQueued() == 0 && System.nanoTime() < end) {
+      Thread.sleep(1);
+    }
+    assertThat(scheduler.getQueued()).isEqualTo(1);
+  }
+
+  private void enqueueUnauthorizedThenRenewedToken() {
+    mockServer.enqueue(tokenResponse("rejected-token"));
+    mockServer.enqueue(new MockResponse().setResponseCode(401));
+    mockServer.enqueue(tokenResponse("renewed-token"));
+    mockServer.enqueue(
+        new MockResponse().setResponseCode(200).setBody("{\"name\": \"my awesome name\"}"));
+  }
+
+  private void assertRetriedWithRenewedToken() throws InterruptedException {
+    mockServer.takeRequest();
+    assertThat(mockServer.takeRequest().getHeader("Authorization"))
+        .isEqualTo("Bearer rejected-token");
+    mockServer.takeRequest();
+    assertThat(mockServer.takeRequest().getHeader("Authorization"))
+        .isEqualTo("Bearer renewed-token");
+    assertThat(mockServer.getRequestCount()).isEqualTo(4);
+  }
+
+  private static MockResponse tokenResponse(String accessToken) {
+    return new MockResponse()
+        .setResponseCode(200)
+        .setBody(
+            "{\"access_token\": \""
+                + accessToken
+                + "\",\"expires_in\": 12,\"token_type\": \"Bearer\"}");
+  }
 }
@@ -0,0 +1,22 @@
+package com.incognia.api.clients;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class VirtualThreadsTest {
+  @Test
+  void testNewThreadPerTaskExecutor_shouldRunTasksOnNamedDaemonThreads() throws Exception {
+    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("incognia-test");
+    try {
+      Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+
+      assertThat(thread.getName()).startsWith("incognia-test-");
+      assertThat(thread.isDaemon()).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}